@@ -0,0 +1,151 @@
+package com.orvo.emailgenerator.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.orvo.emailgenerator.config.ExecutorConfig;
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import com.orvo.emailgenerator.config.property.CompanyIndexProperties;
+import com.orvo.emailgenerator.config.property.DnsProperties;
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.config.property.VerificationStoreProperties;
+import com.orvo.emailgenerator.model.SmtpReply;
+import com.orvo.emailgenerator.repository.DomainPatternStatRepository;
+import com.orvo.emailgenerator.repository.EmailVerificationRepository;
+import com.orvo.emailgenerator.repository.MailHostRateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Builds a {@link LeadService} for benchmarks: the real services, configured from {@code application.yaml},
+ * with the database, DNS and SMTP stubbed out. Every domain resolves to one mail host that rejects any recipient,
+ * so each lead probes all of its candidates.
+ */
+final class BenchmarkFixtures {
+
+    static final String MAIL_HOST = "mx.bench.test";
+
+    static {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    private final Binder binder;
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService verificationExecutor;
+    private final LeadService leadService;
+
+    BenchmarkFixtures() {
+        this.binder = loadConfiguration();
+
+        EmailProperties emailProperties = bind("orvo.email", EmailProperties.class);
+        BatchProperties batchProperties = bind("orvo.batch", BatchProperties.class);
+        VerificationStoreProperties verificationStoreProperties = bind("orvo.verification-store", VerificationStoreProperties.class);
+        // Stored verdicts would answer every repeated lead without probing.
+        verificationStoreProperties.setEnabled(false);
+        DnsProperties dnsProperties = bind("orvo.dns", DnsProperties.class);
+        // The stub answers without DNS traffic; prefetching would query real servers.
+        dnsProperties.getPrefetch().setEnabled(false);
+
+        MailHostLimiter mailHostLimiter = new MailHostLimiter(emailProperties, mock(MailHostRateRepository.class));
+        SmtpEmailVerifier smtpEmailVerifier = new SmtpEmailVerifier(emailProperties, mailHostLimiter,
+                new MailHostCircuitBreaker(emailProperties), (host, permit) -> new RejectingSmtpSession(host, permit));
+        this.verificationExecutor = new ExecutorConfig().verificationExecutor(batchProperties, emailProperties);
+
+        this.leadService = new LeadService(
+                new StubDnsLookupService(dnsProperties, meterRegistry),
+                smtpEmailVerifier,
+                batchProperties,
+                dnsProperties,
+                new VerificationScheduler(batchProperties, verificationExecutor, meterRegistry),
+                new VerificationResultStore(verificationStoreProperties, mock(EmailVerificationRepository.class)),
+                new DomainPatternStats(emailProperties, mock(DomainPatternStatRepository.class)),
+                new EmailPatterns(emailProperties),
+                new CompanyDomainIndex(bind("orvo.company-index", CompanyIndexProperties.class), meterRegistry),
+                meterRegistry);
+    }
+
+    LeadService getLeadService() {
+        return leadService;
+    }
+
+    DnsLookupService newDnsLookupService() {
+        return new DnsLookupService(bind("orvo.dns", DnsProperties.class), new SimpleMeterRegistry());
+    }
+
+    void close() {
+        verificationExecutor.shutdownNow();
+    }
+
+    private <T> T bind(String prefix, Class<T> type) {
+        return binder.bind(prefix, type).get();
+    }
+
+    private static Binder loadConfiguration() {
+        try {
+            return new Binder(ConfigurationPropertySources.from(
+                    new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yaml"))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Answers every domain with {@link #MAIL_HOST}, without any DNS traffic.
+     */
+    private static class StubDnsLookupService extends DnsLookupService {
+
+        StubDnsLookupService(DnsProperties dnsProperties, MeterRegistry meterRegistry) {
+            super(dnsProperties, meterRegistry);
+        }
+
+        @Override
+        public List<String> getMailServers(String domain) {
+            return List.of(MAIL_HOST);
+        }
+
+    }
+
+    /**
+     * A session that answers every probe with a permanent rejection, without any network traffic.
+     */
+    private static class RejectingSmtpSession implements SmtpSession {
+
+        private static final SmtpReply REJECTED = new SmtpReply(550, "550 5.1.1 User unknown");
+
+        private final String host;
+        private final MailHostLimiter.HostPermit permit;
+
+        RejectingSmtpSession(String host, MailHostLimiter.HostPermit permit) {
+            this.host = host;
+            this.permit = permit;
+        }
+
+        @Override
+        public String getHost() {
+            return host;
+        }
+
+        @Override
+        public SmtpReply verify(String email) {
+            return REJECTED;
+        }
+
+        @Override
+        public void close() {
+            permit.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.orvo.emailgenerator.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link LeadService#readChunks(UUID, Path, java.util.function.Consumer)} feeding
+ * {@link LeadService#generateLeads(UUID, int, List, boolean)} on a spooled CSV, in rows per second: CSV parsing,
+ * row mapping and domain grouping, with DNS and SMTP stubbed out and the leads not stored.
+ * A fifth of the rows lack a domain or a name and are rejected without verification.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CsvParsingBenchmark {
+
+    private static final int ROWS = 10_000;
+    private static final int DOMAINS = 500;
+
+    private BenchmarkFixtures fixtures;
+    private LeadService leadService;
+    private Path csvFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixtures = new BenchmarkFixtures();
+        leadService = fixtures.getLeadService();
+        csvFile = Files.createTempFile("orvo-bench-", ".csv");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile)) {
+            writer.write("first_name,last_name,company_name,company_domain\n");
+            for (int i = 0; i < ROWS; i++) {
+                String firstName = i % 10 == 7 ? "" : "First" + i;
+                String domain = i % 10 == 3 ? "" : "company" + (i % DOMAINS) + ".test";
+                writer.write("%s,\"Last %d\",\"Company %d, Inc.\",%s\n".formatted(firstName, i, i % DOMAINS, domain));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixtures.close();
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int generateLeads() {
+        UUID batchId = UUID.randomUUID();
+        return leadService.readChunks(batchId, csvFile, rows -> leadService.generateLeads(batchId, 1, rows, false));
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.EmailComponents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Candidate generation and probing of a single lead through {@link LeadService#generateEmail(EmailComponents)},
+ * with DNS and SMTP stubbed out: measures pattern ranking, candidate building and the probe loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailGenerationBenchmark {
+
+    private BenchmarkFixtures fixtures;
+    private LeadService leadService;
+    private EmailComponents ascii;
+    private EmailComponents accented;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixtures = new BenchmarkFixtures();
+        leadService = fixtures.getLeadService();
+        ascii = EmailComponents.builder().firstName("Jane").lastName("Doe").companyDomain("example.test").build();
+        accented = EmailComponents.builder().firstName("José-María").lastName("Müller Ñúñez").companyDomain("example.test").build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixtures.close();
+    }
+
+    @Benchmark
+    public Optional<String> generateEmail() {
+        return leadService.generateEmail(ascii);
+    }
+
+    @Benchmark
+    public Optional<String> generateEmailWithDiacritics() {
+        return leadService.generateEmail(accented);
+    }
+
+}
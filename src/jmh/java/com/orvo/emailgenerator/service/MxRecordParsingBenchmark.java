@@ -0,0 +1,70 @@
+package com.orvo.emailgenerator.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.TextParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordering of MX record sets by {@link DnsLookupService#parseMXRecords(List)}. Records get random priorities,
+ * and every tenth one repeats an earlier host, as round-robin MX sets do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MxRecordParsingBenchmark {
+
+    @Param({"5", "100", "1000"})
+    private int records;
+
+    private BenchmarkFixtures fixtures;
+    private DnsLookupService dnsLookupService;
+    private List<MXRecord> mxRecords;
+
+    @Setup(Level.Trial)
+    public void setUp() throws TextParseException {
+        fixtures = new BenchmarkFixtures();
+        dnsLookupService = fixtures.newDnsLookupService();
+
+        Name domain = Name.fromString("example.test.");
+        Random random = new Random(42);
+        mxRecords = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            int host = i % 10 == 9 ? random.nextInt(i) : i;
+            mxRecords.add(new MXRecord(domain, DClass.IN, 3600, random.nextInt(100),
+                    Name.fromString("mx" + host + ".example.test.")));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixtures.close();
+    }
+
+    @Benchmark
+    public List<String> parseMXRecords() {
+        return dnsLookupService.parseMXRecords(mxRecords);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.orvo.emailgenerator.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A UDP DNS stub for load tests. Registered domains get a single MX record pointing at a loopback address, which
+ * dnsjava and the SMTP clients accept as the mail host itself; any other name is answered with NXDOMAIN.
+ */
+@Slf4j
+public class FakeDnsServer implements AutoCloseable {
+
+    private static final long TTL_SECONDS = 3600;
+
+    private final DatagramSocket socket;
+    private final Thread thread;
+    private final Map<Name, Name> mailHosts = new ConcurrentHashMap<>();
+    private final AtomicLong queries = new AtomicLong();
+
+    public FakeDnsServer() throws IOException {
+        this.socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        this.thread = Thread.ofPlatform().daemon().name("fake-dns").start(this::serve);
+    }
+
+    /**
+     * @return the {@code host:port} to use as {@code orvo.dns.servers}
+     */
+    public String getAddress() {
+        return socket.getLocalAddress().getHostAddress() + ":" + socket.getLocalPort();
+    }
+
+    public void addMailHost(String domain, InetAddress mailHost) {
+        try {
+            mailHosts.put(Name.fromString(domain, Name.root), Name.fromString(mailHost.getHostAddress(), Name.root));
+        } catch (TextParseException e) {
+            throw new IllegalArgumentException("Invalid domain: " + domain, e);
+        }
+    }
+
+    public long getQueries() {
+        return queries.get();
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        thread.interrupt();
+    }
+
+    private void serve() {
+        byte[] buffer = new byte[512];
+
+        while (!socket.isClosed()) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                socket.receive(packet);
+                queries.incrementAndGet();
+
+                byte[] response = answer(new Message(Arrays.copyOf(packet.getData(), packet.getLength()))).toWire();
+                socket.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.warn("Fake DNS server failed to answer: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Message answer(Message query) {
+        Message response = new Message(query.getHeader().getID());
+        response.getHeader().setFlag(Flags.QR);
+        response.getHeader().setFlag(Flags.AA);
+
+        Record question = query.getQuestion();
+        response.addRecord(question, Section.QUESTION);
+        Name mailHost = mailHosts.get(question.getName());
+
+        if (mailHost == null) {
+            response.getHeader().setRcode(Rcode.NXDOMAIN);
+        } else if (question.getType() == Type.MX) {
+            response.addRecord(new MXRecord(question.getName(), DClass.IN, TTL_SECONDS, 10, mailHost), Section.ANSWER);
+        }
+        return response;
+    }
+
+}
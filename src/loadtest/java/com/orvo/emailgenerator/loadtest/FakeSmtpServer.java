@@ -0,0 +1,234 @@
+package com.orvo.emailgenerator.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A scripted SMTP server for load tests. It listens on the same port of several loopback addresses, so every
+ * address acts as a distinct mail host, and answers recipient probes from the registered mailboxes:
+ * <ul>
+ *     <li>a registered mailbox is accepted, any other recipient gets the configured rejection code;</li>
+ *     <li>every recipient of a catch-all domain is accepted;</li>
+ *     <li>the first probe of each recipient of a greylisted domain gets {@code 450}, later ones the usual answer.</li>
+ * </ul>
+ * Replies are delayed by the configured latency once per round trip: commands sent together under
+ * {@code PIPELINING} are answered together, after a single delay. A configured share of the round trips after the
+ * greeting is never answered, and the session stays silent until the client gives up.
+ */
+@Slf4j
+public class FakeSmtpServer implements AutoCloseable {
+
+    private final List<ServerSocket> serverSockets = new ArrayList<>();
+    /**
+     * Platform threads: the service's SMTP clients may pin the carriers of its virtual threads while they wait for
+     * a reply, which would starve a server running on virtual threads in the same JVM.
+     */
+    private final ExecutorService connections = Executors.newCachedThreadPool(Thread.ofPlatform().daemon().name("fake-smtp-", 0).factory());
+    private final Duration latency;
+    private final boolean pipelining;
+    private final int rejectCode;
+    private final double stallShare;
+    private final AtomicLong stalls = new AtomicLong();
+
+    private final Set<String> mailboxes = ConcurrentHashMap.newKeySet();
+    private final Set<String> catchAllDomains = ConcurrentHashMap.newKeySet();
+    private final Set<String> greylistedDomains = ConcurrentHashMap.newKeySet();
+    private final Set<String> greylistedRecipients = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong recipients = new AtomicLong();
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final AtomicInteger maxOpenSessions = new AtomicInteger();
+
+    /**
+     * Starts listening on an ephemeral port of every given address.
+     *
+     * @param addresses  the loopback addresses standing for the mail hosts
+     * @param latency    delay before each batch of replies
+     * @param pipelining whether {@code PIPELINING} is advertised
+     * @param rejectCode reply code for unknown recipients
+     * @param stallShare share of the round trips after the greeting that are never answered
+     */
+    public FakeSmtpServer(List<InetAddress> addresses, Duration latency, boolean pipelining, int rejectCode,
+                          double stallShare) throws IOException {
+        this.latency = latency;
+        this.pipelining = pipelining;
+        this.rejectCode = rejectCode;
+        this.stallShare = stallShare;
+
+        int port = 0;
+        for (InetAddress address : addresses) {
+            ServerSocket serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(address, port), 1024);
+            port = serverSocket.getLocalPort();
+            serverSockets.add(serverSocket);
+            connections.execute(() -> accept(serverSocket));
+        }
+    }
+
+    public int getPort() {
+        return serverSockets.getFirst().getLocalPort();
+    }
+
+    public void addMailbox(String email) {
+        mailboxes.add(email.toLowerCase(Locale.ROOT));
+    }
+
+    public void addCatchAllDomain(String domain) {
+        catchAllDomains.add(domain);
+    }
+
+    public void addGreylistedDomain(String domain) {
+        greylistedDomains.add(domain);
+    }
+
+    public long getSessions() {
+        return sessions.get();
+    }
+
+    public long getRecipients() {
+        return recipients.get();
+    }
+
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    public int getMaxOpenSessions() {
+        return maxOpenSessions.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ServerSocket serverSocket : serverSockets) {
+            serverSocket.close();
+        }
+        connections.shutdownNow();
+    }
+
+    private void accept(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Fake SMTP server stopped accepting on {}: {}", serverSocket.getLocalSocketAddress(), e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        sessions.incrementAndGet();
+        maxOpenSessions.accumulateAndGet(openSessions.incrementAndGet(), Math::max);
+
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            StringBuilder replies = new StringBuilder("220 fake.load.test ESMTP\r\n");
+            flush(out, replies);
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                boolean quit = reply(line, replies);
+
+                // Pipelined commands are already buffered: answer them all in one round trip.
+                if (quit || !in.ready()) {
+                    if (!quit && stallShare > 0 && ThreadLocalRandom.current().nextDouble() < stallShare) {
+                        stall(in);
+                        return;
+                    }
+                    flush(out, replies);
+                }
+                if (quit) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Fake SMTP session ended: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            openSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops answering and waits until the client closes the connection.
+     */
+    private void stall(BufferedReader in) throws IOException {
+        stalls.incrementAndGet();
+        while (in.readLine() != null) {
+            // Commands sent while stalled are ignored.
+        }
+    }
+
+    private boolean reply(String line, StringBuilder replies) {
+        String command = line.length() < 4 ? line.toUpperCase(Locale.ROOT) : line.substring(0, 4).toUpperCase(Locale.ROOT);
+
+        switch (command) {
+            case "EHLO" -> replies.append(pipelining
+                    ? "250-fake.load.test\r\n250-PIPELINING\r\n250 SIZE 10240000\r\n"
+                    : "250-fake.load.test\r\n250 SIZE 10240000\r\n");
+            case "HELO" -> replies.append("250 fake.load.test\r\n");
+            case "MAIL", "RSET", "NOOP" -> replies.append("250 2.0.0 OK\r\n");
+            case "RCPT" -> replies.append(recipient(line)).append("\r\n");
+            case "QUIT" -> {
+                replies.append("221 2.0.0 Bye\r\n");
+                return true;
+            }
+            default -> replies.append("502 5.5.1 Command not implemented\r\n");
+        }
+        return false;
+    }
+
+    private String recipient(String line) {
+        recipients.incrementAndGet();
+
+        int start = line.indexOf('<');
+        int end = line.lastIndexOf('>');
+        String email = start >= 0 && end > start ? line.substring(start + 1, end).toLowerCase(Locale.ROOT) : "";
+        String domain = email.substring(email.indexOf('@') + 1);
+
+        if (greylistedDomains.contains(domain) && greylistedRecipients.add(email)) {
+            return "450 4.2.0 Greylisted, try again later";
+        }
+        if (catchAllDomains.contains(domain) || mailboxes.contains(email)) {
+            return "250 2.1.5 OK";
+        }
+        return rejectCode + " User unknown";
+    }
+
+    private void flush(OutputStream out, StringBuilder replies) throws IOException, InterruptedException {
+        if (!latency.isZero()) {
+            Thread.sleep(latency);
+        }
+        out.write(replies.toString().getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        replies.setLength(0);
+    }
+
+}
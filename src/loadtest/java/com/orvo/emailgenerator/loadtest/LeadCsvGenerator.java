@@ -0,0 +1,128 @@
+package com.orvo.emailgenerator.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Writes the lead CSV of a load test run and scripts the fake servers to match it. Every domain follows one address
+ * convention; the mailboxes of the leads that should be found are registered with the SMTP server under that
+ * convention. Domains carry a per-run suffix, so earlier runs' stored leads and verdicts do not interfere.
+ */
+class LeadCsvGenerator {
+
+    private static final String[] FIRST_NAMES = {"Anna", "Ben", "Carla", "David", "Elena", "Felix", "Grace", "Hugo"};
+    private static final String[] LAST_NAMES = {"Smith", "Jones", "Garcia", "Miller", "Davis", "Lopez", "Wilson", "Moore"};
+
+    private final LoadTestOptions options;
+    private final Random random = new Random(42);
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+
+    LeadCsvGenerator(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Generates the CSV and registers its domains and mailboxes with the fake servers.
+     *
+     * @param csvFile the file to write, header included
+     */
+    void generate(Path csvFile, FakeDnsServer dnsServer, FakeSmtpServer smtpServer) throws IOException {
+        List<Convention> conventions = new ArrayList<>(options.getDomains());
+
+        for (int d = 0; d < options.getDomains(); d++) {
+            String domain = "c" + d + "-" + runId + ".load.test";
+            conventions.add(Convention.values()[d % Convention.values().length]);
+
+            if (random.nextDouble() < options.getUnresolvedShare()) {
+                continue;
+            }
+            dnsServer.addMailHost(domain, mailHost(d % options.getSmtp().getHosts()));
+
+            if (random.nextDouble() < options.getCatchAllShare()) {
+                smtpServer.addCatchAllDomain(domain);
+            } else if (random.nextDouble() < options.getGreylistedShare()) {
+                smtpServer.addGreylistedDomain(domain);
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile)) {
+            writer.write("first_name,last_name,company_name,company_domain\n");
+
+            for (int i = 0; i < options.getRows(); i++) {
+                int d = i % options.getDomains();
+                String domain = "c" + d + "-" + runId + ".load.test";
+                String firstName = FIRST_NAMES[i % FIRST_NAMES.length] + suffix(i);
+                String lastName = LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length] + suffix(i);
+
+                if (random.nextDouble() < options.getFoundShare()) {
+                    smtpServer.addMailbox(conventions.get(d).localPart(firstName, lastName) + "@" + domain);
+                }
+                writer.write("%s,%s,Company %d,%s\n".formatted(firstName, lastName, d, domain));
+            }
+        }
+    }
+
+    /**
+     * Makes every name unique, so no two leads share an address. Letters only, so the name survives the
+     * normalization of generated addresses unchanged.
+     */
+    private static String suffix(int index) {
+        StringBuilder suffix = new StringBuilder();
+        int value = index;
+        do {
+            suffix.append((char) ('a' + value % 26));
+            value /= 26;
+        } while (value > 0);
+        return suffix.toString();
+    }
+
+    private static InetAddress mailHost(int index) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[]{127, 0, (byte) (index / 250), (byte) (1 + index % 250)});
+    }
+
+    static List<InetAddress> mailHosts(int count) throws UnknownHostException {
+        List<InetAddress> hosts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hosts.add(mailHost(i));
+        }
+        return hosts;
+    }
+
+    /**
+     * Address conventions of the generated domains, all among the default {@code orvo.email.patterns}.
+     */
+    private enum Convention {
+
+        FIRST_DOT_LAST {
+            @Override
+            String localPart(String firstName, String lastName) {
+                return firstName.toLowerCase(Locale.ROOT) + "." + lastName.toLowerCase(Locale.ROOT);
+            }
+        },
+        INITIAL_LAST {
+            @Override
+            String localPart(String firstName, String lastName) {
+                return Character.toLowerCase(firstName.charAt(0)) + lastName.toLowerCase(Locale.ROOT);
+            }
+        },
+        FIRST_LAST {
+            @Override
+            String localPart(String firstName, String lastName) {
+                return firstName.toLowerCase(Locale.ROOT) + lastName.toLowerCase(Locale.ROOT);
+            }
+        };
+
+        abstract String localPart(String firstName, String lastName);
+
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.orvo.emailgenerator.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orvo.emailgenerator.OrvoServiceApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline end-to-end load test: starts a {@link FakeDnsServer} and a {@link FakeSmtpServer}, runs the service against
+ * them, uploads a generated CSV to {@code /leads/upload} and reports the throughput of the batch together with the
+ * latency percentiles of the DNS and SMTP stages.
+ * <p>
+ * {@code --load.*} arguments configure the run (see {@link LoadTestOptions}); any other argument is passed on to the
+ * service, e.g. {@code --orvo.email.smtp.engine=nio}. The service still needs its database.
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(500);
+    private static final List<String> TIMERS = List.of("orvo.dns.lookup", "orvo.smtp.connect", "orvo.smtp.command", "orvo.csv.parse");
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = new Binder(ConfigurationPropertySources.from(new SimpleCommandLinePropertySource(args)))
+                .bind("load", LoadTestOptions.class)
+                .orElseGet(LoadTestOptions::new);
+        List<String> serviceArgs = Arrays.stream(args).filter(arg -> !arg.startsWith("--load.")).toList();
+
+        System.exit(new LoadTest().run(options, serviceArgs) ? 0 : 1);
+    }
+
+    /**
+     * @return true if the batch completed
+     */
+    boolean run(LoadTestOptions options, List<String> serviceArgs) throws IOException, InterruptedException {
+        LoadTestOptions.Smtp smtp = options.getSmtp();
+        Path csvFile = Files.createTempFile("orvo-load-", ".csv");
+
+        try (FakeDnsServer dnsServer = new FakeDnsServer();
+             FakeSmtpServer smtpServer = new FakeSmtpServer(LeadCsvGenerator.mailHosts(smtp.getHosts()),
+                     smtp.getLatency(), smtp.isPipelining(), smtp.getRejectCode(), smtp.getStallShare())) {
+            new LeadCsvGenerator(options).generate(csvFile, dnsServer, smtpServer);
+            log.info("Generated {} leads over {} domains in {}", options.getRows(), options.getDomains(), csvFile);
+
+            try (ConfigurableApplicationContext context = startService(dnsServer, smtpServer, serviceArgs)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                long start = System.nanoTime();
+                JsonNode status = awaitBatch(port, upload(port, csvFile));
+                long elapsedNanos = System.nanoTime() - start;
+
+                report(options, status, elapsedNanos, context.getBean(MeterRegistry.class), dnsServer, smtpServer);
+                return "COMPLETED".equals(status.path("state").asText());
+            }
+        } finally {
+            Files.deleteIfExists(csvFile);
+        }
+    }
+
+    /**
+     * Starts the service on a random port, pointed at the fake servers. Greylisted leads are retried after
+     * seconds rather than minutes, and the stage timers publish percentiles over the whole run, unless the arguments
+     * say otherwise.
+     */
+    private ConfigurableApplicationContext startService(FakeDnsServer dnsServer, FakeSmtpServer smtpServer, List<String> serviceArgs) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("orvo.email.greylisting.initial-delay", "5s");
+        properties.put("orvo.email.greylisting.max-delay", "20s");
+        TIMERS.forEach(timer -> {
+            properties.put("management.metrics.distribution.percentiles." + timer, "0.5,0.99");
+            properties.put("management.metrics.distribution.expiry." + timer, "1h");
+        });
+        serviceArgs.stream()
+                .filter(arg -> arg.startsWith("--"))
+                .forEach(arg -> properties.remove(arg.substring(2).split("=", 2)[0]));
+
+        properties.put("server.port", "0");
+        properties.put("orvo.dns.servers", dnsServer.getAddress());
+        properties.put("orvo.email.port", String.valueOf(smtpServer.getPort()));
+
+        List<String> args = new ArrayList<>(serviceArgs);
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(OrvoServiceApplication.class).run(args.toArray(String[]::new));
+    }
+
+    private UUID upload(int port, Path csvFile) throws IOException, InterruptedException {
+        String boundary = "orvo-load-" + UUID.randomUUID();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/leads/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString("--" + boundary + "\r\n"
+                                + "Content-Disposition: form-data; name=\"file\"; filename=\"leads.csv\"\r\n"
+                                + "Content-Type: text/csv\r\n\r\n"),
+                        HttpRequest.BodyPublishers.ofFile(csvFile),
+                        HttpRequest.BodyPublishers.ofString("\r\n--" + boundary + "--\r\n")))
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 202) {
+            throw new IllegalStateException("Upload rejected with " + response.statusCode() + ": " + response.body());
+        }
+        return UUID.fromString(objectMapper.readTree(response.body()).path("batchId").asText());
+    }
+
+    private JsonNode awaitBatch(int port, UUID batchId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/leads/batches/" + batchId)).build();
+        long lastLog = 0;
+
+        while (true) {
+            JsonNode status = objectMapper.readTree(httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body());
+            String state = status.path("state").asText();
+
+            if (state.equals("COMPLETED") || state.equals("FAILED")) {
+                return status;
+            }
+            if (System.nanoTime() - lastLog > TimeUnit.SECONDS.toNanos(5)) {
+                log.info("Batch {} {}: {} rows processed", batchId, state, status.path("processedRows").asInt());
+                lastLog = System.nanoTime();
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    private void report(LoadTestOptions options, JsonNode status, long elapsedNanos, MeterRegistry meterRegistry,
+                        FakeDnsServer dnsServer, FakeSmtpServer smtpServer) {
+        double seconds = elapsedNanos / 1e9;
+        int processed = status.path("processedRows").asInt();
+        StringBuilder report = new StringBuilder("\n");
+
+        report.append("Batch %s %s%s%n".formatted(status.path("batchId").asText(), status.path("state").asText(),
+                status.hasNonNull("error") ? ": " + status.path("error").asText() : ""));
+        report.append("  %d of %d leads in %.1f s: %.1f leads/s, %d emails found%n".formatted(
+                processed, options.getRows(), seconds, processed / seconds, status.path("emailsFound").asInt()));
+        status.path("statusCounts").properties().forEach(count -> {
+            if (count.getValue().asInt() > 0) {
+                report.append("  %-28s %d%n".formatted(count.getKey(), count.getValue().asInt()));
+            }
+        });
+
+        report.append("%-44s %8s %10s %10s %10s%n".formatted("Stage", "count", "mean ms", "p50 ms", "p99 ms"));
+        for (String name : TIMERS) {
+            for (Timer timer : meterRegistry.find(name).timers()) {
+                HistogramSnapshot snapshot = timer.takeSnapshot();
+                String tags = timer.getId().getTags().stream().map(Tag::getValue).toList().toString();
+                report.append("%-44s %8d %10.2f %10.2f %10.2f%n".formatted(name + " " + tags, snapshot.count(),
+                        snapshot.mean(TimeUnit.MILLISECONDS), percentile(snapshot, 0.5), percentile(snapshot, 0.99)));
+            }
+        }
+
+        report.append("Fake servers: %d DNS queries, %d SMTP sessions (at most %d open), %d RCPT probes, %d stalled round trips%n".formatted(
+                dnsServer.getQueries(), smtpServer.getSessions(), smtpServer.getMaxOpenSessions(), smtpServer.getRecipients(),
+                smtpServer.getStalls()));
+        log.info(report.toString());
+    }
+
+    private double percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+
+}
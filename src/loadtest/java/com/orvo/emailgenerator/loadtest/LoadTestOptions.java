@@ -0,0 +1,75 @@
+package com.orvo.emailgenerator.loadtest;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Options of a load test run, bound from the {@code --load.*} command line arguments
+ * (e.g. {@code --load.rows=100000 --load.smtp.latency=50ms}).
+ */
+@Data
+public class LoadTestOptions {
+
+    /**
+     * Leads in the uploaded CSV.
+     */
+    private int rows = 10_000;
+
+    /**
+     * Distinct company domains the leads are spread over.
+     */
+    private int domains = 500;
+
+    /**
+     * Share of the leads whose mailbox exists under their domain's address pattern.
+     */
+    private double foundShare = 0.8;
+
+    /**
+     * Share of the domains without any DNS record.
+     */
+    private double unresolvedShare = 0.02;
+
+    /**
+     * Share of the domains whose mail server accepts any recipient.
+     */
+    private double catchAllShare = 0.05;
+
+    /**
+     * Share of the domains whose mail server greylists the first probe of every recipient.
+     */
+    private double greylistedShare = 0.0;
+
+    private Smtp smtp = new Smtp();
+
+    @Data
+    public static class Smtp {
+
+        /**
+         * Mail hosts the domains are spread over; each one is a loopback address, 127.0.0.1 upwards. Systems that
+         * only configure 127.0.0.1 (e.g. macOS) need 1.
+         */
+        private int hosts = 8;
+
+        /**
+         * Delay of every reply round trip.
+         */
+        private Duration latency = Duration.ofMillis(20);
+
+        private boolean pipelining = true;
+
+        /**
+         * Share of the reply round trips after the greeting that are never answered, as by a hanging or
+         * tarpitting server; the client has to time out.
+         */
+        private double stallShare = 0.0;
+
+        /**
+         * Reply code for unknown recipients.
+         */
+        private int rejectCode = 550;
+
+    }
+
+}
@@ -1,12 +1,16 @@
 package com.orvo.emailgenerator;
 
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import com.orvo.emailgenerator.config.property.DnsProperties;
 import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.config.property.VerificationStoreProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties(EmailProperties.class)
+@EnableConfigurationProperties({EmailProperties.class, BatchProperties.class, DnsProperties.class,
+        VerificationStoreProperties.class})
 public class OrvoServiceApplication {
 
     public static void main(String[] args) {
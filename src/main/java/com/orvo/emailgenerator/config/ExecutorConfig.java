@@ -0,0 +1,65 @@
+package com.orvo.emailgenerator.config;
+
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Executor running the workers of the lead batch queue, one per chunk processed at the same time. Workers
+     * spend most of their time waiting on DNS and SMTP, so they run on virtual threads.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService leadBatchExecutor(BatchProperties batchProperties) {
+        return Executors.newFixedThreadPool(batchProperties.getMaxConcurrentJobs(),
+                Thread.ofVirtual().name("lead-batch-", 0).factory());
+    }
+
+    /**
+     * Executor reading accepted uploads into the chunks of the lead batch queue, one virtual thread per upload.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService leadIntakeExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("lead-intake-", 0).factory());
+    }
+
+    /**
+     * Executor writing streamed response bodies, i.e. exports and live lead streams. Streams stay open for minutes
+     * while mostly waiting on the client or the database, so each gets its own virtual thread instead of holding
+     * one of the few threads of the default async executor.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService responseStreamExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("response-stream-", 0).factory());
+    }
+
+    /**
+     * Executor verifying domain groups. Shared by all running batches, so its size is the global cap on
+     * domains being probed at the same time.
+     * <p>
+     * With the NIO engine, verifiers only park between replies and run on virtual threads. The Jakarta engine reads
+     * its socket inside {@code synchronized} methods of {@code SMTPTransport}, which would pin the carrier of a
+     * virtual thread for every reply and let slow mail hosts starve all other virtual threads; it therefore runs on
+     * platform threads.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService verificationExecutor(BatchProperties batchProperties, EmailProperties emailProperties) {
+        int workers = batchProperties.getVerificationConcurrency();
+        ThreadFactory threadFactory = emailProperties.getSmtp().getEngine() == EmailProperties.Smtp.Engine.NIO
+                ? Thread.ofVirtual().name("lead-verify-", 0).factory()
+                : Thread.ofPlatform().name("lead-verify-", 0).factory();
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+}
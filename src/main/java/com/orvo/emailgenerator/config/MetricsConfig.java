@@ -0,0 +1,21 @@
+package com.orvo.emailgenerator.config;
+
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Distinct mail hosts tracked by the per-host SMTP meters; replies from further hosts are not recorded,
+     * so a batch touching many small domains cannot blow up the number of time series.
+     */
+    private static final int MAX_SMTP_HOSTS = 1000;
+
+    @Bean
+    public MeterFilter smtpHostTagLimit() {
+        return MeterFilter.maximumAllowableTags("orvo.smtp.replies", "host", MAX_SMTP_HOSTS, MeterFilter.deny());
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.orvo.emailgenerator.config.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "orvo.batch")
+public class BatchProperties {
+
+    /**
+     * Maximum number of chunks processed at the same time by one instance.
+     */
+    private int maxConcurrentJobs;
+
+    /**
+     * Number of CSV rows generated, verified and stored together.
+     */
+    private int chunkSize;
+
+    /**
+     * Maximum number of domain groups verified at the same time across all batches.
+     */
+    private int verificationConcurrency;
+
+    private Queue queue;
+
+    private FairShare fairShare;
+
+    @Data
+    public static class Queue {
+
+        /**
+         * How long an idle worker waits before looking for work again.
+         */
+        private Duration pollInterval;
+
+        /**
+         * How long a claimed chunk stays with its worker without a heartbeat; after that, any instance may claim it.
+         */
+        private Duration leaseDuration;
+
+        /**
+         * How often a worker renews the lease of the chunk it is processing.
+         */
+        private Duration heartbeatInterval;
+
+        /**
+         * Claims of a chunk before its batch is failed, e.g. because every attempt crashed its worker.
+         */
+        private int maxAttempts;
+
+        /**
+         * How long an upload may take to be read into chunks. A batch still being read after that, because the
+         * instance reading it died, is failed.
+         */
+        private Duration intakeTimeout;
+
+    }
+
+    @Data
+    public static class FairShare {
+
+        /**
+         * Highest weight an upload may ask for; uploads default to a weight of 1.
+         */
+        private int maxWeight;
+
+        /**
+         * Chunks of one batch processed at the same time by one instance. Below {@code max-concurrent-jobs},
+         * a worker stays free to pick up the chunks of other batches.
+         */
+        private int maxInFlightChunks;
+
+        /**
+         * Domains of one batch verified at the same time by one instance while other batches are waiting;
+         * a batch running alone may use all of {@code verification-concurrency}.
+         */
+        private int maxInFlightDomains;
+
+    }
+
+}
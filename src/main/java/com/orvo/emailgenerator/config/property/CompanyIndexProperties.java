@@ -0,0 +1,58 @@
+package com.orvo.emailgenerator.config.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "orvo.company-index")
+public class CompanyIndexProperties {
+
+    /**
+     * CSV of known companies with a {@code company_name,domain} header. Without a dataset (or a previously built
+     * index file), leads without a company domain are not probed.
+     */
+    private Path dataset;
+
+    /**
+     * Where the index built from the dataset is kept. It is rebuilt on startup whenever the dataset is newer.
+     */
+    private Path indexFile;
+
+    /**
+     * How often a running instance checks whether the dataset is newer than its index, and rebuilds the index if so.
+     */
+    private Duration checkInterval;
+
+    private Fuzzy fuzzy;
+
+    @Data
+    public static class Fuzzy {
+
+        /**
+         * Whether company names without an exact match are matched to a close spelling.
+         */
+        private boolean enabled;
+
+        /**
+         * Leading characters a fuzzy match must share with the company name.
+         */
+        private int prefixLength;
+
+        /**
+         * Maximum edit distance of a fuzzy match; names shorter than four characters per allowed edit get fewer.
+         */
+        private int maxDistance;
+
+        /**
+         * Maximum number of indexed names compared per fuzzy lookup.
+         */
+        private int maxCandidates;
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.orvo.emailgenerator.config.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "orvo.dns")
+public class DnsProperties {
+
+    /**
+     * Resolvers to query, as {@code host} or {@code host:port}. The system resolvers are used when empty.
+     */
+    private List<String> servers = new ArrayList<>();
+    private Duration timeout;
+    private Cache cache;
+    private Prefetch prefetch;
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Maximum number of domains kept in the cache.
+         */
+        private long maxSize;
+
+        /**
+         * Bounds applied to record TTLs.
+         */
+        private Duration minTtl;
+        private Duration maxTtl;
+
+        /**
+         * Upper bound for caching NXDOMAIN and "no mail server" answers.
+         */
+        private Duration negativeTtl;
+
+    }
+
+    @Data
+    public static class Prefetch {
+
+        /**
+         * Whether the distinct domains of an upload are resolved up front, before their leads are verified.
+         */
+        private boolean enabled;
+
+        /**
+         * Maximum number of prefetch lookups waiting for an answer at the same time.
+         */
+        private int maxInFlight;
+
+        /**
+         * Further attempts for a lookup that failed with a server failure or a timeout.
+         */
+        private int retries;
+
+    }
+
+}
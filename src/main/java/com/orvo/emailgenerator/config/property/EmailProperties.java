@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.List;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "orvo.email")
@@ -11,14 +14,155 @@ public class EmailProperties {
 
     private int port;
     private String username;
+
+    /**
+     * Candidate local-part templates, tried in this order unless a domain's history says otherwise.
+     * Placeholders: {@code {first}}, {@code {last}}, {@code {f}} and {@code {l}} (initials).
+     */
+    private List<String> patterns;
     private Smtp smtp;
+    private CatchAll catchAll;
+    private HostLimits hostLimits;
+    private Greylisting greylisting;
+    private CircuitBreaker circuitBreaker;
+    private PatternStats patternStats;
 
     @Data
     public static class Smtp {
 
+        /**
+         * Client carrying the SMTP conversations: blocking Jakarta Mail, or the non-blocking NIO event loop.
+         */
+        private Engine engine;
         private int connectiontimeout;
         private int timeout;
         private int writetimeout;
+        private int recipientsPerTransaction;
+        private Nio nio;
+        private AdaptiveTimeouts adaptiveTimeouts;
+
+        public enum Engine {
+            JAKARTA, NIO
+        }
+
+        @Data
+        public static class Nio {
+
+            /**
+             * Selector threads shared by all NIO conversations.
+             */
+            private int eventLoops;
+
+        }
+
+        @Data
+        public static class AdaptiveTimeouts {
+
+            /**
+             * Whether each mail host gets its timeouts from the latencies it has shown, per phase of the
+             * conversation. The fixed timeouts above then only serve as upper bounds.
+             */
+            private boolean enabled;
+
+            /**
+             * A phase times out after this percentile of the host's recent latencies times {@code headroom},
+             * but never sooner than {@code min-timeout}.
+             */
+            private double percentile;
+            private double headroom;
+            private Duration minTimeout;
+
+            /**
+             * Latencies kept per host and phase, and how many a host needs before its timeouts adapt; until then
+             * the fixed timeouts apply.
+             */
+            private int window;
+            private int minSamples;
+
+        }
+
+    }
+
+    @Data
+    public static class CatchAll {
+
+        /**
+         * Whether domains are probed with a random local part to detect accept-all mail servers.
+         */
+        private boolean enabled;
+
+        /**
+         * How long a domain's accept-all verdict is reused.
+         */
+        private Duration verdictTtl;
+        private long maxDomains;
+
+    }
+
+    @Data
+    public static class HostLimits {
+
+        /**
+         * Maximum number of open SMTP sessions per mail host.
+         */
+        private int maxConcurrentSessions;
+
+        /**
+         * Sustained rate and burst size of SMTP commands sent to one mail host.
+         */
+        private double commandsPerSecond;
+        private int burst;
+
+        /**
+         * Paces commands per mail host across all instances through the database instead of per instance,
+         * at the cost of one database round trip per command. Session caps stay per instance.
+         */
+        private boolean distributed;
+
+    }
+
+    @Data
+    public static class Greylisting {
+
+        /**
+         * Retries of a temporarily rejected probe before giving up.
+         */
+        private int maxAttempts;
+        private Duration initialDelay;
+        private double multiplier;
+        private Duration maxDelay;
+
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        /**
+         * Consecutive connection failures or timeouts after which a mail host is skipped.
+         */
+        private int failureThreshold;
+
+        /**
+         * How long a host is skipped before a trial connection is attempted.
+         */
+        private Duration openDuration;
+
+    }
+
+    @Data
+    public static class PatternStats {
+
+        /**
+         * Hits after which a domain's most successful pattern counts as its confirmed convention, provided it
+         * also holds at least {@code confirmation-share} of the domain's hits.
+         */
+        private int confirmationHits;
+        private double confirmationShare;
+
+        /**
+         * Number of domains whose statistics are kept in memory.
+         */
+        private long maxDomains;
 
     }
 
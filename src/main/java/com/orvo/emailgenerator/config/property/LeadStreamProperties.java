@@ -0,0 +1,44 @@
+package com.orvo.emailgenerator.config.property;
+
+import com.orvo.emailgenerator.service.LeadResultService;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Data
+@Component
+@Validated
+@ConfigurationProperties(prefix = "orvo.lead-stream")
+public class LeadStreamProperties {
+
+    /**
+     * Leads read from the database at a time; a stream holds at most one page in memory. Bounded by the largest
+     * page {@link LeadResultService} reads.
+     */
+    @Min(1)
+    @Max(LeadResultService.MAX_PAGE_SIZE)
+    private int pageSize;
+
+    /**
+     * How often a stream looks for leads stored by other instances. Leads stored by this instance are
+     * streamed right away.
+     */
+    private Duration pollInterval;
+
+    /**
+     * How long an idle Server-Sent Events stream waits before sending a comment to keep the connection open.
+     */
+    private Duration heartbeatInterval;
+
+    /**
+     * How long a stream stays open; clients resume from the last lead id they received. Keep it below
+     * {@code spring.mvc.async.request-timeout}.
+     */
+    private Duration maxDuration;
+
+}
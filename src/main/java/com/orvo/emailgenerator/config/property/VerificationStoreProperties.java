@@ -0,0 +1,46 @@
+package com.orvo.emailgenerator.config.property;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "orvo.verification-store")
+public class VerificationStoreProperties {
+
+    /**
+     * Whether verdicts of earlier probes are reused instead of probing the same address again.
+     */
+    private boolean enabled;
+
+    /**
+     * How long a stored verdict is trusted before the address is probed again.
+     */
+    private Duration freshnessTtl;
+
+    /**
+     * Number of recent verdicts kept in memory.
+     */
+    private long recentSize;
+
+    /**
+     * Sizing of the in-memory filter that rules out never-verified addresses without a database query.
+     */
+    private long expectedEmails;
+    private double falsePositiveRate;
+
+    /**
+     * How often the filter picks up addresses verified since the last refresh, by this or any other instance.
+     */
+    private Duration filterRefreshInterval;
+
+    /**
+     * How far each refresh reaches back before the previous one, covering clock skew between instances and
+     * verdicts committed after the previous refresh ran.
+     */
+    private Duration filterRefreshOverlap;
+
+}
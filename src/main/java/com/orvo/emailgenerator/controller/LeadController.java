@@ -1,24 +1,83 @@
 package com.orvo.emailgenerator.controller;
 
-import com.orvo.emailgenerator.model.dto.response.LeadGenerationResponse;
-import com.orvo.emailgenerator.service.LeadService;
+import com.orvo.emailgenerator.model.ExportFormat;
+import com.orvo.emailgenerator.model.StreamFormat;
+import com.orvo.emailgenerator.model.dto.response.BatchStatusResponse;
+import com.orvo.emailgenerator.model.dto.response.LeadPageResponse;
+import com.orvo.emailgenerator.service.LeadBatchService;
+import com.orvo.emailgenerator.service.LeadResultService;
+import com.orvo.emailgenerator.service.LeadStreamService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.UUID;
 
 @RequiredArgsConstructor
 @RestController
 @RequestMapping("/leads")
 public class LeadController {
 
-    private final LeadService leadService;
+    private final LeadBatchService leadBatchService;
+    private final LeadResultService leadResultService;
+    private final LeadStreamService leadStreamService;
 
     @PostMapping("/upload")
-    public ResponseEntity<LeadGenerationResponse> generateLeads(@RequestParam("file") MultipartFile file) {
-        return ResponseEntity.ok(leadService.generateLeads(file));
+    public ResponseEntity<BatchStatusResponse> generateLeads(@RequestParam("file") MultipartFile file,
+                                                             @RequestParam(defaultValue = "1") int weight) {
+        return ResponseEntity.accepted().body(leadBatchService.submit(file, weight));
+    }
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<BatchStatusResponse> getBatchStatus(@PathVariable UUID batchId) {
+        return ResponseEntity.of(leadBatchService.getStatus(batchId));
+    }
+
+    @GetMapping("/batches/{batchId}/leads")
+    public ResponseEntity<LeadPageResponse> getBatchLeads(@PathVariable UUID batchId,
+                                                          @RequestParam(defaultValue = "0") long afterId,
+                                                          @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(leadResultService.getLeads(batchId, afterId, limit));
+    }
+
+    @GetMapping("/batches/{batchId}/export")
+    public ResponseEntity<StreamingResponseBody> exportBatchLeads(@PathVariable UUID batchId,
+                                                                  @RequestParam(name = "format", defaultValue = "csv") String formatName) {
+        ExportFormat format = ExportFormat.of(formatName)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + formatName));
+        String fileName = batchId + "." + format.name().toLowerCase();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(out -> leadResultService.export(batchId, format, out));
+    }
+
+    @GetMapping("/batches/{batchId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamBatchLeads(@PathVariable UUID batchId,
+                                                                  @RequestParam(defaultValue = "0") long afterId,
+                                                                  @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+                                                                  @RequestHeader(name = HttpHeaders.ACCEPT, defaultValue = "") String accept) {
+        if (leadBatchService.getStatus(batchId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamFormat format = accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE) ? StreamFormat.SSE : StreamFormat.NDJSON;
+        long from = lastEventId != null ? lastEventId : afterId;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .cacheControl(CacheControl.noStore())
+                .body(out -> leadStreamService.stream(batchId, from, format, out));
     }
 }
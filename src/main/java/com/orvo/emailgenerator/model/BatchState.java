@@ -0,0 +1,10 @@
+package com.orvo.emailgenerator.model;
+
+public enum BatchState {
+
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+
+}
@@ -0,0 +1,14 @@
+package com.orvo.emailgenerator.model;
+
+import lombok.Data;
+
+/**
+ * A candidate address of a lead and the pattern template it was built from.
+ */
+@Data
+public class EmailCandidate {
+
+    private final String pattern;
+    private final String email;
+
+}
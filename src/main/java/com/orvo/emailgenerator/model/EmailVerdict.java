@@ -0,0 +1,11 @@
+package com.orvo.emailgenerator.model;
+
+/**
+ * Definite outcome of probing an address. Temporary failures are never stored as a verdict.
+ */
+public enum EmailVerdict {
+
+    ACCEPTED,
+    REJECTED
+
+}
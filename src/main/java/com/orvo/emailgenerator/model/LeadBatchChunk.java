@@ -0,0 +1,43 @@
+package com.orvo.emailgenerator.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A leased chunk of a batch's CSV rows, as claimed from the work queue.
+ */
+@Getter
+@Builder
+public class LeadBatchChunk {
+
+    private final long id;
+    private final UUID batchId;
+    private final int chunkNo;
+
+    /**
+     * How many times the chunk's rows were deferred before: 0 for a chunk of the upload, more for a chunk of leads
+     * retried after temporary failures.
+     */
+    private final int retries;
+
+    private final List<String[]> rows;
+
+    /**
+     * The weight of the chunk's batch.
+     */
+    private final int weight;
+
+    /**
+     * Claims of the chunk so far, this one included.
+     */
+    private final int attempts;
+
+    /**
+     * Why the previous attempt gave up on the chunk, if it did.
+     */
+    private final String error;
+
+}
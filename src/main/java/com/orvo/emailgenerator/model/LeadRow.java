@@ -0,0 +1,18 @@
+package com.orvo.emailgenerator.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A single data row of an uploaded lead CSV.
+ */
+@Builder
+@Data
+public class LeadRow {
+
+    private String firstName;
+    private String lastName;
+    private String companyName;
+    private String companyDomain;
+
+}
@@ -6,9 +6,24 @@ import lombok.Getter;
 public enum LeadStatus {
 
     EMAIL_CREATED("Email Created"),
+    EMAIL_NOT_FOUND("Email Not Found"),
+    CATCH_ALL_DOMAIN("Catch-All Domain"),
     INSUFFICIENT_COMPANY_INFO("Insufficient Company Info"),
     INCOMPLETE_LEAD_DATA("Incomplete Lead Data"),
-    PROCESSING_ERROR("Processing Error");
+    PROCESSING_ERROR("Processing Error"),
+
+    /**
+     * Answered only with temporary failures so far, or not at all because no mail server of the domain could be
+     * reached, and queued for a later retry. Counted in the batch status while the retry is pending, but never
+     * stored: the lead is stored once the retry resolves it.
+     */
+    VERIFICATION_PENDING("Verification Pending"),
+
+    /**
+     * Generated an email already stored for another row of the same batch. Counted in the batch status, but not
+     * stored again.
+     */
+    DUPLICATE_EMAIL("Duplicate Email");
 
     private final String description;
 
@@ -0,0 +1,58 @@
+package com.orvo.emailgenerator.model;
+
+import lombok.Getter;
+
+/**
+ * Reply of a mail server to a single SMTP command.
+ */
+@Getter
+public class SmtpReply {
+
+    /**
+     * Code used when no reply was received, e.g. because the connection failed.
+     */
+    public static final int NO_REPLY = -1;
+
+    private final int code;
+    /**
+     * Full reply line(s) as sent by the server, code included.
+     */
+    private final String message;
+
+    public SmtpReply(int code, String message) {
+        this.code = code;
+        this.message = message != null ? message.trim() : "";
+    }
+
+    public static SmtpReply noReply(String reason) {
+        return new SmtpReply(NO_REPLY, reason);
+    }
+
+    /**
+     * @return true if the recipient was accepted (250 or 251)
+     */
+    public boolean isAccepted() {
+        return code == 250 || code == 251;
+    }
+
+    /**
+     * @return true for 4xx replies, which may succeed when retried later
+     */
+    public boolean isTransientFailure() {
+        return code >= 400 && code < 500;
+    }
+
+    /**
+     * @return true for the temporary failures worth retrying later: 421 (service not available),
+     * 450 (mailbox unavailable, typically greylisting) and 451 (local error)
+     */
+    public boolean isRetryable() {
+        return code == 421 || code == 450 || code == 451;
+    }
+
+    @Override
+    public String toString() {
+        return code == NO_REPLY ? "no reply: " + message : message;
+    }
+
+}
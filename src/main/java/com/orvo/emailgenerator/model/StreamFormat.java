@@ -0,0 +1,17 @@
+package com.orvo.emailgenerator.model;
+
+import lombok.Getter;
+
+@Getter
+public enum StreamFormat {
+
+    SSE("text/event-stream"),
+    NDJSON("application/x-ndjson");
+
+    private final String mediaType;
+
+    StreamFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.orvo.emailgenerator.model.dto.response;
+
+import com.orvo.emailgenerator.model.BatchState;
+import com.orvo.emailgenerator.model.LeadStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@Builder
+public class BatchStatusResponse {
+
+    private UUID batchId;
+    private BatchState state;
+    private int weight;
+    private Integer totalRows;
+    private int processedRows;
+    private int emailsFound;
+    private Map<LeadStatus, Integer> statusCounts;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+
+}
@@ -0,0 +1,19 @@
+package com.orvo.emailgenerator.model.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class LeadPageResponse {
+
+    private List<LeadResponseDto> leads;
+
+    /**
+     * Value of {@code afterId} for the next page, or null if this is the last page.
+     */
+    private Long nextAfterId;
+
+}
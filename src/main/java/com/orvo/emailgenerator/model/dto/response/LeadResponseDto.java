@@ -1,5 +1,6 @@
 package com.orvo.emailgenerator.model.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -7,6 +8,11 @@ import lombok.Data;
 @Builder
 public class LeadResponseDto {
 
+    /**
+     * Id of the stored lead, the cursor to resume a stream from; absent until the lead is stored.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long id;
     private String firstName;
     private String lastName;
     private String companyName;
@@ -0,0 +1,49 @@
+package com.orvo.emailgenerator.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * How often an email pattern was confirmed by a mail server for one domain.
+ */
+@Entity
+@Table(name = "domain_pattern_stats")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DomainPatternStat {
+
+    @EmbeddedId
+    private Id id;
+
+    @Column(name = "hits", nullable = false)
+    private int hits;
+
+    @Column(name = "last_hit_at", nullable = false)
+    private LocalDateTime lastHitAt;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Id implements Serializable {
+
+        @Column(name = "domain", nullable = false)
+        private String domain;
+
+        /**
+         * Pattern template, e.g. {@code {first}.{last}}.
+         */
+        @Column(name = "pattern", nullable = false, length = 100)
+        private String pattern;
+
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.orvo.emailgenerator.model.entity;
+
+import com.orvo.emailgenerator.model.EmailVerdict;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "email_verifications")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailVerification {
+
+    /**
+     * Normalized (trimmed, lower-case) address.
+     */
+    @Id
+    @Column(name = "email", nullable = false)
+    private String email;
+
+    @Column(name = "smtp_code", nullable = false)
+    private int smtpCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "verdict", nullable = false)
+    private EmailVerdict verdict;
+
+    @Column(name = "mx_host", nullable = false)
+    private String mxHost;
+
+    @Column(name = "verified_at", nullable = false)
+    private LocalDateTime verifiedAt;
+
+}
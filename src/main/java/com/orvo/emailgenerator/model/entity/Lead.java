@@ -12,9 +12,10 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "leads", indexes = {
-        @Index(name = "idx_batch_id", columnList = "batch_id"),
+        @Index(name = "idx_leads_batch_id_id", columnList = "batch_id, id"),
         @Index(name = "idx_leads_status", columnList = "status")
-})
+}, uniqueConstraints = @UniqueConstraint(name = "uk_leads_batch_id_generated_email",
+        columnNames = {"batch_id", "generated_email"}))
 @Data
 @Builder
 @NoArgsConstructor
@@ -40,7 +41,7 @@ public class Lead {
     @Column(name = "company_domain", nullable = false)
     private String companyDomain;
 
-    @Column(name = "generated_email", unique = true)
+    @Column(name = "generated_email")
     private String generatedEmail;
 
     @Enumerated(EnumType.STRING)
@@ -0,0 +1,74 @@
+package com.orvo.emailgenerator.model.entity;
+
+import com.orvo.emailgenerator.model.BatchState;
+import com.orvo.emailgenerator.model.LeadStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Durable record of a lead batch, shared by all instances. The counts are updated in the same transaction as
+ * the leads of every stored chunk, so {@code processedRows} is always the number of rows whose leads are stored.
+ */
+@Entity
+@Table(name = "lead_batches", indexes = @Index(name = "idx_lead_batches_state", columnList = "state"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeadBatch {
+
+    @Id
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false)
+    private BatchState state;
+
+    /**
+     * Share of the verification capacity the batch gets relative to the other batches in progress.
+     */
+    @Column(name = "weight", nullable = false)
+    private int weight;
+
+    /**
+     * Rows claimed so far divided by the weight. Chunks of the batch with the lowest value are claimed first;
+     * new batches start at the lowest value of the batches with chunks still to process.
+     */
+    @Column(name = "weighted_rows", nullable = false)
+    private double weightedRows;
+
+    @Column(name = "processed_rows", nullable = false)
+    private int processedRows;
+
+    @Column(name = "emails_found", nullable = false)
+    private int emailsFound;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "status_counts", nullable = false)
+    private Map<LeadStatus, Integer> statusCounts;
+
+    @Column(name = "total_rows")
+    private Integer totalRows;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+}
@@ -0,0 +1,24 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.entity.DomainPatternStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface DomainPatternStatRepository extends JpaRepository<DomainPatternStat, DomainPatternStat.Id> {
+
+    List<DomainPatternStat> findAllByIdDomain(String domain);
+
+    @Modifying
+    @Query(value = """
+            insert into domain_pattern_stats (domain, pattern, hits, last_hit_at)
+            values (:domain, :pattern, 1, :hitAt)
+            on conflict (domain, pattern) do update set hits = domain_pattern_stats.hits + 1, last_hit_at = excluded.last_hit_at
+            """, nativeQuery = true)
+    void recordHit(@Param("domain") String domain, @Param("pattern") String pattern, @Param("hitAt") LocalDateTime hitAt);
+
+}
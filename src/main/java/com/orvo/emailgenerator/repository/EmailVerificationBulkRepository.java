@@ -0,0 +1,19 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.entity.EmailVerification;
+
+import java.util.Collection;
+
+/**
+ * High-volume write path for verdicts, bypassing the persistence context.
+ */
+public interface EmailVerificationBulkRepository {
+
+    /**
+     * Inserts the verdicts in a single statement, replacing the stored verdict of an address verified before.
+     *
+     * @param verifications the verdicts to store, at most one per address
+     */
+    void upsertAll(Collection<EmailVerification> verifications);
+
+}
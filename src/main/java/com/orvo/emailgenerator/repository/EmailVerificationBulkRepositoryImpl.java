@@ -0,0 +1,55 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.entity.EmailVerification;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Upserts verdicts as column arrays expanded by {@code unnest}. Rows are sorted by address, so concurrent upserts
+ * of overlapping verdicts lock them in the same order instead of deadlocking.
+ */
+@RequiredArgsConstructor
+public class EmailVerificationBulkRepositoryImpl implements EmailVerificationBulkRepository {
+
+    private static final String UPSERT_SQL = """
+            insert into email_verifications (email, smtp_code, verdict, mx_host, verified_at)
+            select * from unnest(?::varchar[], ?::int[], ?::varchar[], ?::varchar[], ?::timestamp[])
+            on conflict (email) do update set smtp_code = excluded.smtp_code, verdict = excluded.verdict,
+                mx_host = excluded.mx_host, verified_at = excluded.verified_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertAll(Collection<EmailVerification> verifications) {
+        if (verifications.isEmpty()) {
+            return;
+        }
+        List<EmailVerification> rows = verifications.stream()
+                .sorted(Comparator.comparing(EmailVerification::getEmail))
+                .toList();
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(UPSERT_SQL);
+            ps.setArray(1, connection.createArrayOf("varchar", column(rows, EmailVerification::getEmail)));
+            ps.setArray(2, connection.createArrayOf("int", column(rows, EmailVerification::getSmtpCode)));
+            ps.setArray(3, connection.createArrayOf("varchar", column(rows, row -> row.getVerdict().name())));
+            ps.setArray(4, connection.createArrayOf("varchar", column(rows, EmailVerification::getMxHost)));
+            ps.setArray(5, connection.createArrayOf("timestamp",
+                    column(rows, row -> Timestamp.valueOf(row.getVerifiedAt()))));
+            return ps;
+        });
+    }
+
+    private static Object[] column(List<EmailVerification> rows, Function<EmailVerification, ?> getter) {
+        return rows.stream().map(getter).toArray();
+    }
+
+}
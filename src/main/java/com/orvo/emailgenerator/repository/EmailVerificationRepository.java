@@ -0,0 +1,26 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.entity.EmailVerification;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface EmailVerificationRepository extends JpaRepository<EmailVerification, String>,
+        EmailVerificationBulkRepository {
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    @Query("select v.email from EmailVerification v where v.verifiedAt > :since")
+    Stream<String> streamEmailsVerifiedAfter(@Param("since") LocalDateTime since);
+
+    @Query("select v.email from EmailVerification v where v.verifiedAt > :since")
+    List<String> findEmailsVerifiedAfter(@Param("since") LocalDateTime since);
+
+}
@@ -0,0 +1,177 @@
+package com.orvo.emailgenerator.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orvo.emailgenerator.model.LeadBatchChunk;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The work queue of lead batches: one row per chunk of CSV rows, claimed by the instances with
+ * {@code FOR UPDATE SKIP LOCKED} under a lease. A chunk whose lease ran out, because its instance died or lost
+ * the database, is claimed again by the next poll of any instance. Lease times are taken from the database clock,
+ * so the instances' clocks need not agree. Leads deferred by temporary failures are queued again as a chunk that
+ * is not claimed before its delay has passed.
+ * <p>
+ * Chunks are claimed fairly across batches: first those of the batch with the lowest
+ * {@code lead_batches.weighted_rows}, then in queue order. Chunks of finished batches are never claimed, even
+ * if they were queued after their batch failed.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LeadBatchChunkRepository {
+
+    private static final TypeReference<List<String[]>> ROWS_TYPE = new TypeReference<>() {
+    };
+    private static final String CLAIM_SQL = """
+            update lead_batch_chunks chunk set state = 'LEASED', lease_owner = ?, attempts = chunk.attempts + 1,
+                lease_expires_at = clock_timestamp() + ? * interval '1 millisecond'
+            from lead_batches batch
+            where batch.id = chunk.batch_id and chunk.id = (
+                select candidate.id from lead_batch_chunks candidate
+                join lead_batches candidate_batch on candidate_batch.id = candidate.batch_id
+                where ((candidate.state = 'PENDING'
+                        and (candidate.available_at is null or candidate.available_at <= clock_timestamp()))
+                       or (candidate.state = 'LEASED' and candidate.lease_expires_at < clock_timestamp()))
+                    and candidate_batch.state in ('QUEUED', 'RUNNING')
+                    and candidate.batch_id <> all(cast(? as uuid[]))
+                order by candidate_batch.weighted_rows, candidate.id
+                limit 1
+                for update of candidate skip locked)
+            returning chunk.id, chunk.batch_id, chunk.chunk_no, chunk.retries, chunk.rows, chunk.attempts, chunk.error,
+                batch.weight
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void insert(UUID batchId, int chunkNo, List<String[]> rows) {
+        jdbcTemplate.update("""
+                insert into lead_batch_chunks (batch_id, chunk_no, rows, state)
+                values (?, ?, cast(? as jsonb), 'PENDING')
+                """, batchId, chunkNo, toJson(rows));
+    }
+
+    /**
+     * Queues the deferred rows of a chunk again, to be claimed once the delay has passed.
+     *
+     * @param retries how many times the rows have been deferred, this time included
+     */
+    public void insertRetry(UUID batchId, int chunkNo, int retries, List<String[]> rows, Duration delay) {
+        jdbcTemplate.update("""
+                insert into lead_batch_chunks (batch_id, chunk_no, retries, rows, state, available_at)
+                values (?, ?, ?, cast(? as jsonb), 'PENDING', clock_timestamp() + ? * interval '1 millisecond')
+                """, batchId, chunkNo, retries, toJson(rows), delay.toMillis());
+    }
+
+    /**
+     * Leases the next chunk that is pending or whose lease has expired.
+     *
+     * @param owner           the claiming worker
+     * @param lease           how long the chunk stays leased unless renewed
+     * @param excludedBatches batches whose chunks must not be claimed
+     * @return the claimed chunk, or empty if there is no work
+     */
+    public Optional<LeadBatchChunk> claim(String owner, Duration lease, Collection<UUID> excludedBatches) {
+        String excluded = excludedBatches.stream().map(UUID::toString).collect(Collectors.joining(",", "{", "}"));
+        return jdbcTemplate.query(CLAIM_SQL, this::toChunk, owner, lease.toMillis(), excluded).stream().findFirst();
+    }
+
+    /**
+     * Extends the lease of a chunk still held by the owner.
+     *
+     * @return false if the lease was lost to another worker or the chunk is no longer leased
+     */
+    public boolean renewLease(long id, String owner, Duration lease) {
+        return jdbcTemplate.update("""
+                update lead_batch_chunks set lease_expires_at = clock_timestamp() + ? * interval '1 millisecond'
+                where id = ? and state = 'LEASED' and lease_owner = ?
+                """, lease.toMillis(), id, owner) == 1;
+    }
+
+    /**
+     * Marks a chunk held by the owner as done.
+     *
+     * @return false if the lease was lost, in which case the chunk's results must not be stored
+     */
+    public boolean markDone(long id, String owner) {
+        return jdbcTemplate.update("""
+                update lead_batch_chunks set state = 'DONE', rows = '[]', lease_owner = null, lease_expires_at = null
+                where id = ? and state = 'LEASED' and lease_owner = ?
+                """, id, owner) == 1;
+    }
+
+    /**
+     * Hands a chunk held by the owner back to the queue, to be claimed again right away.
+     */
+    public void release(long id, String owner, String error) {
+        jdbcTemplate.update("""
+                update lead_batch_chunks set state = 'PENDING', lease_owner = null, lease_expires_at = null, error = ?
+                where id = ? and state = 'LEASED' and lease_owner = ?
+                """, error, id, owner);
+    }
+
+    /**
+     * Hands a chunk held by the owner back to the queue without counting the attempt, e.g. on shutdown.
+     */
+    public void handBack(long id, String owner) {
+        jdbcTemplate.update("""
+                update lead_batch_chunks set state = 'PENDING', lease_owner = null, lease_expires_at = null,
+                    attempts = attempts - 1
+                where id = ? and state = 'LEASED' and lease_owner = ?
+                """, id, owner);
+    }
+
+    /**
+     * Takes every unfinished chunk of a batch off the queue.
+     */
+    public void failUnfinished(UUID batchId, String error) {
+        jdbcTemplate.update("""
+                update lead_batch_chunks set state = 'FAILED', rows = '[]', lease_owner = null, lease_expires_at = null,
+                    error = ?
+                where batch_id = ? and state in ('PENDING', 'LEASED')
+                """, error, batchId);
+    }
+
+    public int countUnfinished(UUID batchId) {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from lead_batch_chunks where batch_id = ? and state <> 'DONE'", Integer.class, batchId);
+    }
+
+    private LeadBatchChunk toChunk(ResultSet rs, int rowNum) throws SQLException {
+        try {
+            return LeadBatchChunk.builder()
+                    .id(rs.getLong("id"))
+                    .batchId(rs.getObject("batch_id", UUID.class))
+                    .chunkNo(rs.getInt("chunk_no"))
+                    .retries(rs.getInt("retries"))
+                    .rows(objectMapper.readValue(rs.getString("rows"), ROWS_TYPE))
+                    .weight(rs.getInt("weight"))
+                    .attempts(rs.getInt("attempts"))
+                    .error(rs.getString("error"))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Unreadable rows in lead batch chunk " + rs.getLong("id"), e);
+        }
+    }
+
+    private String toJson(List<String[]> rows) {
+        try {
+            return objectMapper.writeValueAsString(rows);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize the rows of a lead batch chunk", e);
+        }
+    }
+
+}
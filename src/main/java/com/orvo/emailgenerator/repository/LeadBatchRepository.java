@@ -0,0 +1,99 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.BatchState;
+import com.orvo.emailgenerator.model.entity.LeadBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface LeadBatchRepository extends JpaRepository<LeadBatch, UUID> {
+
+    /**
+     * Adds the counts of a stored chunk to the batch. Concurrent updates from several instances queue up on the
+     * row lock, so none is lost; {@code statusCounts} must hold every status.
+     */
+    @Modifying
+    @Query(value = """
+            update lead_batches set processed_rows = processed_rows + :processedRows,
+                emails_found = emails_found + :emailsFound,
+                status_counts = (select jsonb_object_agg(delta.key, delta.value::int + coalesce((status_counts ->> delta.key)::int, 0))
+                                 from jsonb_each_text(cast(:statusCounts as jsonb)) delta)
+            where id = :id
+            """, nativeQuery = true)
+    int addProgress(@Param("id") UUID id, @Param("processedRows") int processedRows,
+                    @Param("emailsFound") int emailsFound, @Param("statusCounts") String statusCounts);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update LeadBatch b set b.totalRows = :totalRows where b.id = :id")
+    int setTotalRows(@Param("id") UUID id, @Param("totalRows") int totalRows);
+
+    /**
+     * The current state of a batch, read from the database even if the batch is loaded in the persistence context.
+     */
+    @Query("select b.state from LeadBatch b where b.id = :id")
+    Optional<BatchState> findStateById(@Param("id") UUID id);
+
+    /**
+     * The lowest {@code weightedRows} of the unfinished batches with chunks still queued or in progress, where new
+     * batches join the fair share. Batches without such chunks, e.g. one whose upload is still being read or one
+     * left unfinished by a failure or one waiting only for the retry of deferred leads, do not claim anything, so
+     * their stale value must not hold new batches back.
+     */
+    @Query(value = """
+            select coalesce(min(b.weighted_rows), 0) from lead_batches b
+            where b.state in ('QUEUED', 'RUNNING')
+                and exists (select 1 from lead_batch_chunks c where c.batch_id = b.id
+                    and (c.state = 'LEASED' or (c.state = 'PENDING' and (c.available_at is null or c.available_at <= clock_timestamp()))))
+            """, nativeQuery = true)
+    double findLowestWeightedRows();
+
+    /**
+     * Charges the rows of a claimed chunk to the batch's fair share and marks the batch as running.
+     */
+    @Modifying
+    @Query(value = """
+            update lead_batches set weighted_rows = weighted_rows + cast(:rows as double precision) / weight,
+                state = case when state = 'QUEUED' then 'RUNNING' else state end,
+                started_at = coalesce(started_at, :startedAt)
+            where id = :id
+            """, nativeQuery = true)
+    int markClaimed(@Param("id") UUID id, @Param("rows") int rows, @Param("startedAt") LocalDateTime startedAt);
+
+    /**
+     * Completes a batch whose upload has been read to the end, i.e. whose total is known.
+     */
+    @Modifying
+    @Query("""
+            update LeadBatch b set b.state = com.orvo.emailgenerator.model.BatchState.COMPLETED, b.finishedAt = :finishedAt
+            where b.id = :id and b.totalRows is not null and b.state in (com.orvo.emailgenerator.model.BatchState.QUEUED,
+                com.orvo.emailgenerator.model.BatchState.RUNNING)
+            """)
+    int markCompleted(@Param("id") UUID id, @Param("finishedAt") LocalDateTime finishedAt);
+
+    /**
+     * The unfinished batches accepted before the given time whose upload has still not been read to the end.
+     */
+    @Query("""
+            select b.id from LeadBatch b
+            where b.totalRows is null and b.createdAt < :createdBefore
+                and b.state in (com.orvo.emailgenerator.model.BatchState.QUEUED,
+                    com.orvo.emailgenerator.model.BatchState.RUNNING)
+            """)
+    List<UUID> findUnfinishedIntakes(@Param("createdBefore") LocalDateTime createdBefore);
+
+    @Modifying
+    @Query("""
+            update LeadBatch b set b.state = :state, b.error = :error, b.finishedAt = :finishedAt
+            where b.id = :id and b.state in (com.orvo.emailgenerator.model.BatchState.QUEUED,
+                com.orvo.emailgenerator.model.BatchState.RUNNING)
+            """)
+    int markFinished(@Param("id") UUID id, @Param("state") BatchState state, @Param("error") String error,
+                     @Param("finishedAt") LocalDateTime finishedAt);
+
+}
@@ -0,0 +1,22 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.entity.Lead;
+
+import java.util.List;
+
+/**
+ * High-volume write path for leads, bypassing the persistence context.
+ */
+public interface LeadBulkRepository {
+
+    /**
+     * Inserts the leads with one {@code unnest} statement per slice of the list. A lead whose generated email is
+     * already stored for its batch, by an earlier chunk or earlier in the same list, is skipped instead of failing
+     * the whole insert; the same email may be stored for other batches.
+     *
+     * @param leads the leads to insert
+     * @return the leads actually inserted, in the order of {@code leads}
+     */
+    List<Lead> insertIgnoringDuplicates(List<Lead> leads);
+
+}
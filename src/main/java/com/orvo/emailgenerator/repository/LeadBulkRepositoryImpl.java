@@ -0,0 +1,90 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.entity.Lead;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Inserts leads as column arrays expanded by {@code unnest}, one statement per {@value #ROWS_PER_STATEMENT} rows,
+ * with {@code ON CONFLICT DO NOTHING} on the {@code (batch_id, generated_email)} key. Ids come from the
+ * {@code leads.id} identity column. Duplicates within the list are dropped before the insert, so the emails the
+ * statement returns tell exactly which leads were inserted.
+ */
+@RequiredArgsConstructor
+public class LeadBulkRepositoryImpl implements LeadBulkRepository {
+
+    private static final int ROWS_PER_STATEMENT = 1000;
+    private static final String INSERT_SQL = """
+            insert into leads (batch_id, first_name, last_name, company_name, company_domain, generated_email,
+                status, created_at)
+            select * from unnest(?::uuid[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[],
+                ?::varchar[], ?::timestamp[])
+            on conflict (batch_id, generated_email) do nothing
+            returning batch_id, generated_email
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Lead> insertIgnoringDuplicates(List<Lead> leads) {
+        LocalDateTime now = LocalDateTime.now();
+        Set<StoredEmail> listed = new HashSet<>();
+        List<Lead> distinct = leads.stream()
+                .filter(lead -> lead.getGeneratedEmail() == null
+                        || listed.add(new StoredEmail(lead.getBatchId(), lead.getGeneratedEmail())))
+                .toList();
+        List<Lead> inserted = new ArrayList<>(distinct.size());
+
+        for (int from = 0; from < distinct.size(); from += ROWS_PER_STATEMENT) {
+            List<Lead> rows = distinct.subList(from, Math.min(from + ROWS_PER_STATEMENT, distinct.size()));
+
+            Set<StoredEmail> stored = new HashSet<>(jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_SQL);
+                ps.setArray(1, connection.createArrayOf("uuid", column(rows, Lead::getBatchId)));
+                ps.setArray(2, varchars(connection, rows, Lead::getFirstName));
+                ps.setArray(3, varchars(connection, rows, Lead::getLastName));
+                ps.setArray(4, varchars(connection, rows, Lead::getCompanyName));
+                ps.setArray(5, varchars(connection, rows, Lead::getCompanyDomain));
+                ps.setArray(6, varchars(connection, rows, Lead::getGeneratedEmail));
+                ps.setArray(7, varchars(connection, rows, lead -> lead.getStatus().name()));
+                ps.setArray(8, connection.createArrayOf("timestamp", column(rows,
+                        lead -> Timestamp.valueOf(lead.getCreatedAt() != null ? lead.getCreatedAt() : now))));
+                return ps;
+            }, (rs, rowNum) -> new StoredEmail(rs.getObject("batch_id", UUID.class), rs.getString("generated_email"))));
+
+            for (Lead lead : rows) {
+                if (lead.getGeneratedEmail() == null
+                        || stored.contains(new StoredEmail(lead.getBatchId(), lead.getGeneratedEmail()))) {
+                    inserted.add(lead);
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private static Array varchars(Connection connection, List<Lead> rows, Function<Lead, String> getter)
+            throws SQLException {
+        return connection.createArrayOf("varchar", column(rows, getter));
+    }
+
+    private static Object[] column(List<Lead> rows, Function<Lead, ?> getter) {
+        return rows.stream().map(getter).toArray();
+    }
+
+    private record StoredEmail(UUID batchId, String email) {
+    }
+
+}
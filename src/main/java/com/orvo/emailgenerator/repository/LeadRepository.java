@@ -1,7 +1,17 @@
 package com.orvo.emailgenerator.repository;
 
 import com.orvo.emailgenerator.model.entity.Lead;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface LeadRepository extends JpaRepository<Lead, Long> {
+import java.util.List;
+import java.util.UUID;
+
+public interface LeadRepository extends JpaRepository<Lead, Long>, LeadBulkRepository {
+
+    /**
+     * Keyset page of a batch's leads, served by the {@code (batch_id, id)} index.
+     */
+    List<Lead> findByBatchIdAndIdGreaterThanOrderByIdAsc(UUID batchId, long afterId, Limit limit);
+
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.orvo.emailgenerator.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Token buckets of the mail hosts shared by all instances, one row per host. Each take refills the bucket by the
+ * time elapsed on the database clock and takes one token in a single upsert, so concurrent instances queue up on
+ * the host's row and never hand out the same token twice.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MailHostRateRepository {
+
+    private static final String TAKE_TOKEN_SQL = """
+            insert into mail_host_rate_limits as bucket (host, tokens, refreshed_at)
+            values (?, ? - 1, clock_timestamp())
+            on conflict (host) do update set
+                tokens = least(?, bucket.tokens + extract(epoch from clock_timestamp() - bucket.refreshed_at) * ?) - 1,
+                refreshed_at = clock_timestamp()
+            returning tokens
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes one token from the host's bucket.
+     *
+     * @param host            the mail server host
+     * @param tokensPerSecond the refill rate
+     * @param capacity        the bucket size
+     * @return the tokens left; a negative balance is the debt the caller has to wait for
+     */
+    public double takeToken(String host, double tokensPerSecond, int capacity) {
+        return jdbcTemplate.queryForObject(TAKE_TOKEN_SQL, Double.class, host, capacity, capacity, tokensPerSecond);
+    }
+
+}
@@ -0,0 +1,410 @@
+package com.orvo.emailgenerator.service;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import com.orvo.emailgenerator.config.property.CompanyIndexProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Derives the domain of a company from its name, using a dataset of known companies.
+ * <p>
+ * Company names are normalized before they are compared: accents, punctuation, spacing, a leading "The" and
+ * trailing legal forms (Inc, GmbH, Ltd, ...) are dropped, so "The Acme Corp." and "ACME, Inc" share one key.
+ * The dataset is compiled into a sorted index file that is memory-mapped rather than loaded onto the heap; a name
+ * is looked up by binary search, and, failing an exact match, among the keys sharing its first
+ * {@code orvo.company-index.fuzzy.prefix-length} characters by edit distance.
+ * <p>
+ * The index is rebuilt on startup, and every {@code orvo.company-index.check-interval} afterwards, whenever the
+ * dataset is newer than the index file; lookups switch over to the new index once it is complete.
+ */
+@Slf4j
+@Service
+public class CompanyDomainIndex {
+
+    private static final int MAGIC = 0x4f434931;
+    private static final int MAX_LENGTH = 255;
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Set<String> LEGAL_SUFFIXES = Set.of(
+            "inc", "incorporated", "corp", "corporation", "co", "company", "llc", "llp", "lp", "ltd", "limited",
+            "plc", "gmbh", "ag", "kg", "ug", "se", "sa", "sas", "sarl", "sl", "srl", "spa", "bv", "nv", "ab", "as",
+            "asa", "oy", "oyj", "pty", "pte", "kk");
+
+    private final CompanyIndexProperties companyIndexProperties;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService datasetChecks;
+    private volatile MappedIndex index = MappedIndex.EMPTY;
+
+    public CompanyDomainIndex(CompanyIndexProperties companyIndexProperties, MeterRegistry meterRegistry) {
+        this.companyIndexProperties = companyIndexProperties;
+        this.meterRegistry = meterRegistry;
+        this.datasetChecks = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("company-index-check").factory());
+        load();
+    }
+
+    /**
+     * Starts checking the configured dataset for changes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startDatasetChecks() {
+        if (companyIndexProperties.getDataset() == null) {
+            return;
+        }
+        long intervalMillis = companyIndexProperties.getCheckInterval().toMillis();
+        datasetChecks.scheduleWithFixedDelay(this::rebuildIfStale, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        datasetChecks.shutdownNow();
+    }
+
+    /**
+     * Finds the domain of a company.
+     *
+     * @param companyName the company name as given in the upload
+     * @return the domain of the exactly or, if enabled, closest matching known company
+     */
+    public Optional<String> findDomain(String companyName) {
+        String key = normalize(companyName);
+
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        MappedIndex current = index;
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        String domain = current.find(keyBytes);
+        String outcome = "exact";
+
+        if (domain == null && companyIndexProperties.getFuzzy().isEnabled()) {
+            domain = findClosest(current, key);
+            outcome = "fuzzy";
+        }
+        meterRegistry.counter("orvo.company-index.lookups", "outcome", domain == null ? "not_found" : outcome).increment();
+        return Optional.ofNullable(domain);
+    }
+
+    /**
+     * Rebuilds the index from a dataset and switches lookups over to it.
+     *
+     * @param dataset CSV with a {@code company_name,domain} header; later duplicates of a company are ignored
+     * @return the number of indexed companies
+     */
+    private int rebuild(Path dataset) {
+        Map<String, String> domains = new HashMap<>();
+
+        try (Reader reader = Files.newBufferedReader(dataset)) {
+            CSVReader csvReader = new CSVReader(reader);
+            csvReader.skip(1);
+
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                if (row.length < 2) {
+                    continue;
+                }
+                String key = normalize(row[0]);
+                String domain = normalizeDomain(row[1]);
+
+                if (!key.isEmpty() && key.length() <= MAX_LENGTH && domain != null && domain.length() <= MAX_LENGTH) {
+                    domains.putIfAbsent(key, domain);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (CsvException e) {
+            throw new IllegalArgumentException("Invalid company dataset " + dataset + ": " + e.getMessage(), e);
+        }
+
+        Path indexFile = companyIndexProperties.getIndexFile();
+        try {
+            write(domains, indexFile);
+            index = MappedIndex.map(indexFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Indexed {} companies from {} into {}", domains.size(), dataset, indexFile);
+        return domains.size();
+    }
+
+    /**
+     * Maps the index file, rebuilding it first if the configured dataset is newer.
+     */
+    private void load() {
+        Path dataset = companyIndexProperties.getDataset();
+        Path indexFile = companyIndexProperties.getIndexFile();
+
+        try {
+            if (dataset != null && isStale(dataset, indexFile)) {
+                rebuild(dataset);
+            } else if (indexFile != null && Files.exists(indexFile)) {
+                index = MappedIndex.map(indexFile);
+                log.info("Loaded {} companies from {}", index.count, indexFile);
+            } else {
+                log.info("No company dataset configured; leads without a company domain will not be probed");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rebuilds the index if the dataset changed since it was built. A dataset that cannot be indexed leaves the
+     * current index in place.
+     */
+    private void rebuildIfStale() {
+        Path dataset = companyIndexProperties.getDataset();
+        try {
+            if (isStale(dataset, companyIndexProperties.getIndexFile())) {
+                rebuild(dataset);
+            }
+        } catch (RuntimeException | IOException e) {
+            log.warn("Could not rebuild the company index from {}: {}", dataset, e.getMessage());
+        }
+    }
+
+    private static boolean isStale(Path dataset, Path indexFile) throws IOException {
+        return !Files.exists(indexFile)
+                || Files.getLastModifiedTime(dataset).compareTo(Files.getLastModifiedTime(indexFile)) > 0;
+    }
+
+    /**
+     * Compares the name with the indexed keys sharing its prefix and returns the domain of the one with the
+     * smallest edit distance within the allowed maximum; ties go to the first key in index order.
+     */
+    private String findClosest(MappedIndex current, String key) {
+        CompanyIndexProperties.Fuzzy fuzzy = companyIndexProperties.getFuzzy();
+        int maxDistance = Math.min(fuzzy.getMaxDistance(), key.length() / 4);
+
+        if (maxDistance == 0 || key.length() < fuzzy.getPrefixLength()) {
+            return null;
+        }
+        byte[] prefix = key.substring(0, fuzzy.getPrefixLength()).getBytes(StandardCharsets.UTF_8);
+        int bestEntry = -1;
+        int bestDistance = maxDistance + 1;
+
+        int start = current.lowerBound(prefix);
+        int end = Math.min(current.count, start + fuzzy.getMaxCandidates());
+        for (int i = start; i < end; i++) {
+            byte[] candidate = current.key(i);
+
+            if (!startsWith(candidate, prefix)) {
+                break;
+            }
+            int distance = distance(key, new String(candidate, StandardCharsets.UTF_8), bestDistance - 1);
+            if (distance < bestDistance) {
+                bestEntry = i;
+                bestDistance = distance;
+            }
+        }
+        return bestEntry < 0 ? null : current.domain(bestEntry);
+    }
+
+    /**
+     * Normalizes a company name into its index key: lowercase letters and digits only, without accents,
+     * a leading "The" or trailing legal forms. Dots and apostrophes are dropped rather than split on, so
+     * "G.m.b.H." is recognized as a legal form.
+     */
+    static String normalize(String companyName) {
+        if (companyName == null) {
+            return "";
+        }
+        String text = MARKS.matcher(Normalizer.normalize(companyName, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .replace("&", " and ")
+                .replaceAll("[.']", "");
+        List<String> tokens = new ArrayList<>(Arrays.stream(NON_ALPHANUMERIC.split(text)).filter(token -> !token.isEmpty()).toList());
+
+        while (tokens.size() > 1 && LEGAL_SUFFIXES.contains(tokens.getLast())) {
+            tokens.removeLast();
+        }
+        if (tokens.size() > 1 && tokens.getFirst().equals("the")) {
+            tokens.removeFirst();
+        }
+        return String.join("", tokens);
+    }
+
+    /**
+     * Reduces a dataset domain, possibly given as a URL, to its host name without {@code www.}.
+     *
+     * @return the domain, or null if it is not one
+     */
+    private static String normalizeDomain(String value) {
+        String domain = value.trim().toLowerCase(Locale.ROOT).replaceFirst("^[a-z][a-z0-9+.-]*://", "");
+        int end = domain.indexOf('/');
+        domain = end < 0 ? domain : domain.substring(0, end);
+        domain = domain.startsWith("www.") ? domain.substring(4) : domain;
+        return domain.contains(".") && !domain.startsWith(".") && !domain.endsWith(".") ? domain : null;
+    }
+
+    /**
+     * Writes the entries sorted by the UTF-8 bytes of their keys: a header (magic, count), the offset of every
+     * entry, then the entries themselves as length-prefixed key and domain. The file is written next to the
+     * target and moved into place, so a running instance never maps a partial file.
+     */
+    private static void write(Map<String, String> domains, Path indexFile) throws IOException {
+        List<byte[][]> entries = new ArrayList<>(domains.size());
+        domains.forEach((key, domain) -> entries.add(new byte[][]{
+                key.getBytes(StandardCharsets.UTF_8), domain.getBytes(StandardCharsets.UTF_8)}));
+        entries.sort((a, b) -> Arrays.compareUnsigned(a[0], b[0]));
+
+        Path directory = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+
+            long offset = 8 + 4L * entries.size();
+            for (byte[][] entry : entries) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("Company dataset too large for one index file");
+                }
+                out.writeInt((int) offset);
+                offset += 4 + entry[0].length + entry[1].length;
+            }
+            for (byte[][] entry : entries) {
+                out.writeShort(entry[0].length);
+                out.write(entry[0]);
+                out.writeShort(entry[1].length);
+                out.write(entry[1]);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        return bytes.length >= prefix.length && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    /**
+     * Levenshtein distance of two strings, or {@code max + 1} as soon as it is known to exceed {@code max}.
+     */
+    static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    /**
+     * A read-only view of an index file. Reads use absolute positions only, so lookups need no locking.
+     */
+    private static class MappedIndex {
+
+        static final MappedIndex EMPTY = new MappedIndex(ByteBuffer.allocate(8).putInt(0, MAGIC), 0);
+
+        private final ByteBuffer buffer;
+        private final int count;
+
+        MappedIndex(ByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        static MappedIndex map(Path indexFile) throws IOException {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Company index file too large: " + indexFile);
+                }
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not a company index file: " + indexFile);
+                }
+                return new MappedIndex(buffer, buffer.getInt(4));
+            }
+        }
+
+        String find(byte[] key) {
+            int i = lowerBound(key);
+            return i < count && Arrays.equals(key(i), key) ? domain(i) : null;
+        }
+
+        /**
+         * @return the first entry whose key is not smaller than the given one, or {@code count} if there is none
+         */
+        int lowerBound(byte[] key) {
+            int low = 0;
+            int high = count;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (Arrays.compareUnsigned(key(middle), key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        byte[] key(int entry) {
+            int offset = buffer.getInt(8 + 4 * entry);
+            byte[] key = new byte[Short.toUnsignedInt(buffer.getShort(offset))];
+            buffer.get(offset + 2, key);
+            return key;
+        }
+
+        String domain(int entry) {
+            int offset = buffer.getInt(8 + 4 * entry);
+            offset += 2 + Short.toUnsignedInt(buffer.getShort(offset));
+            byte[] domain = new byte[Short.toUnsignedInt(buffer.getShort(offset))];
+            buffer.get(offset + 2, domain);
+            return new String(domain, StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -1,116 +1,466 @@
 package com.orvo.emailgenerator.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.orvo.emailgenerator.config.property.DnsProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.ExtendedResolver;
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
 
-import javax.naming.Context;
-import javax.naming.NamingEnumeration;
-import javax.naming.NamingException;
-import javax.naming.directory.Attribute;
-import javax.naming.directory.Attributes;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.AbstractMap;
-import java.util.Hashtable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for performing DNS lookups to retrieve MX (Mail Exchange) records,
  * with a fallback to A record if no MX records are found.
+ * <p>
+ * Answers are kept in a bounded in-process cache for as long as their records' TTL allows. NXDOMAIN and
+ * "no mail server" answers are cached as well, for at most {@code orvo.dns.cache.negative-ttl}. Concurrent
+ * lookups of the same domain share a single query.
  */
 @Slf4j
 @Service
 public class DnsLookupService {
 
-    private static final String DNS_CONTEXT_FACTORY = "com.sun.jndi.dns.DnsContextFactory";
-    private static final String DNS_PREFIX = "dns:/";
-    private static final String MX_RECORD_TYPE = "MX";
+    private static final String CACHE_NAME = "dns.mail-servers";
+
+    private final DnsProperties dnsProperties;
+    private final MeterRegistry meterRegistry;
+    private final Resolver resolver;
+    private final AsyncCache<String, MailServerLookup> cache;
+
+    @Autowired
+    public DnsLookupService(DnsProperties dnsProperties, MeterRegistry meterRegistry) {
+        this(dnsProperties, meterRegistry, createResolver(dnsProperties), Ticker.systemTicker());
+    }
+
+    DnsLookupService(DnsProperties dnsProperties, MeterRegistry meterRegistry, Resolver resolver, Ticker ticker) {
+        this.dnsProperties = dnsProperties;
+        this.meterRegistry = meterRegistry;
+        this.resolver = resolver;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(dnsProperties.getCache().getMaxSize())
+                .expireAfter(new TtlExpiry())
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
 
     /**
-     * Retrieves the mail server (MX or, if none, A record) for the specified domain.
+     * Retrieves the most preferred mail server (MX or, if none, A record) for the specified domain.
      *
      * @param domain the domain name to lookup the mail server for
      * @return an Optional containing the mail server host if found
      */
     public Optional<String> getMailServer(String domain) {
+        return getMailServers(domain).stream().findFirst();
+    }
+
+    /**
+     * Retrieves all mail servers of the specified domain, most preferred first: the MX hosts ordered by priority,
+     * or the A record address if the domain has no MX records.
+     *
+     * @param domain the domain name to lookup the mail servers for
+     * @return the mail server hosts, empty if none were found
+     */
+    public List<String> getMailServers(String domain) {
         if (domain == null || domain.isEmpty()) {
             log.warn("Domain must not be null or empty");
-            return Optional.empty();
+            return List.of();
         }
 
         try {
-            DirContext context = createDnsContext();
+            return cache.get(normalize(domain), (key, executor) -> lookup(key)).join().getHosts();
+        } catch (CompletionException e) {
+            log.error("Error during mail server lookup for {}: {}", domain, e.getCause().getMessage());
+            return List.of();
+        }
+    }
 
-            // First, attempt to get MX records.
-            Optional<String> mxServer = getMXRecord(context, domain);
+    /**
+     * @return hit, miss and eviction counts of the mail server cache
+     */
+    public CacheStats getCacheStats() {
+        return cache.synchronous().stats();
+    }
 
-            if (mxServer.isPresent()) {
-                return mxServer;
+    /**
+     * Resolves the mail servers of many domains ahead of time, so later {@link #getMailServers(String)} calls are
+     * answered from the cache. Lookups run concurrently, at most {@code orvo.dns.prefetch.max-in-flight} at a time,
+     * without blocking the caller; failed lookups are retried up to {@code orvo.dns.prefetch.retries} times.
+     * Domains already cached, or being resolved, are skipped.
+     *
+     * @param domains the domains to resolve
+     * @return completes once every domain has been resolved or has run out of attempts
+     */
+    public CompletableFuture<Void> prefetch(Collection<String> domains) {
+        Prefetch prefetch = startPrefetch();
+        prefetch.add(domains);
+        return prefetch.finish();
+    }
+
+    /**
+     * Starts a {@link #prefetch(Collection)} whose domains are added while it runs, e.g. as an upload is read.
+     * The lookups of all added domains share one {@code orvo.dns.prefetch.max-in-flight} bound.
+     *
+     * @return the running prefetch; {@link Prefetch#finish()} must be called once the last domains are added
+     */
+    public Prefetch startPrefetch() {
+        DnsProperties.Prefetch prefetchProperties = dnsProperties.getPrefetch();
+        return new Prefetch(Math.max(1, prefetchProperties.getMaxInFlight()), prefetchProperties.getRetries());
+    }
+
+    /**
+     * Resolves the domain and records the latency in {@code orvo.dns.lookup}, by outcome. Cache hits are not timed.
+     */
+    private CompletableFuture<MailServerLookup> lookup(String domain) {
+        long start = System.nanoTime();
+
+        return resolve(domain).whenComplete((result, e) -> {
+            String outcome = e != null ? "error" : result.getHosts().isEmpty() ? "not_found" : "found";
+            Timer.builder("orvo.dns.lookup")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private CompletableFuture<MailServerLookup> resolve(String domain) {
+        Name name;
+        try {
+            name = Name.fromString(domain, Name.root);
+        } catch (TextParseException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // First, attempt to get MX records.
+        return query(name, Type.MX).thenCompose(response -> {
+            if (response.getRcode() == Rcode.NXDOMAIN) {
+                return CompletableFuture.completedFuture(negative(response));
             }
+
+            List<MXRecord> mxRecords = getRecords(response, MXRecord.class);
+            if (!mxRecords.isEmpty()) {
+                List<String> hosts = parseMXRecords(mxRecords);
+                return CompletableFuture.completedFuture(hosts.isEmpty() ? negative(response) : positive(hosts, minTtl(mxRecords)));
+            }
+
             // Fallback to A record if no MX records are found.
             log.warn("No MX records found for {}. Falling back to A record.", domain);
-            return getARecord(context, domain);
-        } catch (NamingException e) {
-            log.error("Error during mail server lookup for {}: {}", domain, e.getMessage());
-            return Optional.empty();
+            return query(name, Type.A).thenApply(this::getARecord);
+        });
+    }
+
+    private CompletableFuture<Message> query(Name name, int type) {
+        Message query = Message.newQuery(Record.newRecord(name, type, DClass.IN));
+
+        return resolver.sendAsync(query).toCompletableFuture().thenApply(response -> {
+            int rcode = response.getRcode();
+
+            if (rcode != Rcode.NOERROR && rcode != Rcode.NXDOMAIN) {
+                // Server failures are not cached; the next call queries again.
+                throw new CompletionException(new IOException(
+                        "%s lookup for %s failed: %s".formatted(Type.string(type), name, Rcode.string(rcode))));
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Orders the mail servers of a set of MX records by priority, most preferred first. A lone null MX
+     * ({@code 0 .}, RFC 7505) declares that the domain accepts no mail and yields no host.
+     */
+    List<String> parseMXRecords(List<MXRecord> records) {
+        Queue<Map.Entry<Integer, String>> mxHeap = new PriorityQueue<>(Map.Entry.comparingByKey());
+
+        for (MXRecord record : records) {
+            if (record.getTarget().equals(Name.root)) {
+                continue;
+            }
+            mxHeap.add(new AbstractMap.SimpleEntry<>(record.getPriority(), record.getTarget().toString(true)));
+        }
+        List<String> hosts = new ArrayList<>(mxHeap.size());
+        while (!mxHeap.isEmpty()) {
+            String host = mxHeap.poll().getValue();
+
+            if (!hosts.contains(host)) {
+                hosts.add(host);
+            }
         }
+        return hosts;
     }
 
-    private DirContext createDnsContext() throws NamingException {
-        Hashtable<String, String> env = new Hashtable<>();
-        env.put(Context.INITIAL_CONTEXT_FACTORY, DNS_CONTEXT_FACTORY);
-        return new InitialDirContext(env);
+    private MailServerLookup getARecord(Message response) {
+        List<ARecord> aRecords = getRecords(response, ARecord.class);
+
+        if (aRecords.isEmpty()) {
+            return negative(response);
+        }
+        String ipAddress = aRecords.getFirst().getAddress().getHostAddress();
+        return positive(List.of(ipAddress), minTtl(aRecords));
     }
 
-    private Optional<String> getMXRecord(DirContext context, String domain) throws NamingException {
-        Attributes attributes = context.getAttributes(DNS_PREFIX + domain, new String[]{MX_RECORD_TYPE});
-        Attribute servers = attributes.get(MX_RECORD_TYPE);
+    private <T extends Record> List<T> getRecords(Message response, Class<T> type) {
+        List<T> records = new ArrayList<>();
 
-        if (servers == null) {
-            return Optional.empty();
+        for (Record record : response.getSection(Section.ANSWER)) {
+            if (type.isInstance(record)) {
+                records.add(type.cast(record));
+            }
         }
-        return parseMXRecords(servers);
+        return records;
     }
 
-    private Optional<String> parseMXRecords(Attribute servers) throws NamingException {
-        Queue<Map.Entry<Integer, String>> mxHeap = new PriorityQueue<>(Map.Entry.comparingByKey());
-        NamingEnumeration<?> hostsWithPriorities = servers.getAll();
+    private long minTtl(List<? extends Record> records) {
+        return records.stream().mapToLong(Record::getTTL).min().orElse(0);
+    }
 
-        while (hostsWithPriorities.hasMore()) {
-            String record = hostsWithPriorities.next().toString().trim();
-            String[] parts = record.split("\\s+", 2);
+    private MailServerLookup positive(List<String> hosts, long ttlSeconds) {
+        DnsProperties.Cache cacheProperties = dnsProperties.getCache();
+        Duration ttl = clamp(Duration.ofSeconds(ttlSeconds), cacheProperties.getMinTtl(), cacheProperties.getMaxTtl());
+        return new MailServerLookup(List.copyOf(hosts), ttl);
+    }
 
-            if (parts.length < 2) {
-                continue;
+    /**
+     * Builds a negative answer, cached for the SOA minimum of the response (RFC 2308), but no longer than the
+     * configured negative TTL.
+     */
+    private MailServerLookup negative(Message response) {
+        Duration ttl = dnsProperties.getCache().getNegativeTtl();
+
+        for (Record record : response.getSection(Section.AUTHORITY)) {
+            if (record instanceof SOARecord soa) {
+                Duration soaTtl = Duration.ofSeconds(Math.min(soa.getTTL(), soa.getMinimum()));
+                ttl = soaTtl.compareTo(ttl) < 0 ? soaTtl : ttl;
             }
+        }
+        return new MailServerLookup(List.of(), ttl);
+    }
 
-            try {
-                Integer priority = Integer.valueOf(parts[0].trim());
-                String mxHost = parts[1].trim();
-                mxHeap.add(new AbstractMap.SimpleEntry<>(priority, mxHost));
-            } catch (NumberFormatException e) {
-                log.warn("Skipping record with invalid priority: {}", record);
+    private Duration clamp(Duration ttl, Duration min, Duration max) {
+        if (ttl.compareTo(min) < 0) {
+            return min;
+        }
+        return ttl.compareTo(max) > 0 ? max : ttl;
+    }
+
+    private String normalize(String domain) {
+        String normalized = domain.trim().toLowerCase();
+        return normalized.endsWith(".") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+
+    private static Resolver createResolver(DnsProperties dnsProperties) {
+        ExtendedResolver extendedResolver;
+        try {
+            if (dnsProperties.getServers().isEmpty()) {
+                extendedResolver = new ExtendedResolver();
+            } else {
+                List<Resolver> resolvers = new ArrayList<>();
+                for (String server : dnsProperties.getServers()) {
+                    resolvers.add(createSimpleResolver(server));
+                }
+                extendedResolver = new ExtendedResolver(resolvers);
             }
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Invalid DNS resolver configuration: " + e.getMessage(), e);
         }
-        return !mxHeap.isEmpty() ? Optional.of(mxHeap.poll().getValue()) : Optional.empty();
+        extendedResolver.setTimeout(dnsProperties.getTimeout());
+        return extendedResolver;
     }
 
-    private Optional<String> getARecord(DirContext context, String domain) throws NamingException {
-        Attributes attributes = context.getAttributes(DNS_PREFIX + domain, new String[]{"A"});
-        Attribute aRecord = attributes.get("A");
+    private static SimpleResolver createSimpleResolver(String server) throws UnknownHostException {
+        int separator = server.lastIndexOf(':');
 
-        if (aRecord != null) {
-            try {
-                String ipAddress = aRecord.get(0).toString().trim();
-                return Optional.of(ipAddress);
-            } catch (NamingException e) {
-                log.error("Error retrieving A record for {}: {}", domain, e.getMessage());
+        if (separator < 0) {
+            return new SimpleResolver(server);
+        }
+        SimpleResolver simpleResolver = new SimpleResolver(server.substring(0, separator));
+        simpleResolver.setPort(Integer.parseInt(server.substring(separator + 1)));
+        return simpleResolver;
+    }
+
+    /**
+     * A running prefetch: up to {@code maxInFlight} lanes resolve one domain at a time and take the next one once
+     * the answer is in. A lane that finds no domain left stops, and added domains start lanes again.
+     */
+    public class Prefetch {
+
+        private final int maxInFlight;
+        private final int retries;
+        private final Queue<String> queued = new ArrayDeque<>();
+        private final Set<String> added = new HashSet<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int lanes;
+        private boolean finished;
+
+        private Prefetch(int maxInFlight, int retries) {
+            this.maxInFlight = maxInFlight;
+            this.retries = retries;
+        }
+
+        /**
+         * Queues the domains not added before and starts resolving them.
+         */
+        public void add(Collection<String> domains) {
+            synchronized (this) {
+                domains.stream()
+                        .filter(domain -> domain != null && !domain.isBlank())
+                        .map(DnsLookupService.this::normalize)
+                        .filter(added::add)
+                        .forEach(queued::add);
             }
+            for (int i = 0; i < maxInFlight; i++) {
+                next();
+            }
+        }
+
+        /**
+         * Marks the end of the domains.
+         *
+         * @return completes once every added domain has been resolved or has run out of attempts
+         */
+        public CompletableFuture<Void> finish() {
+            boolean complete;
+            synchronized (this) {
+                finished = true;
+                complete = lanes == 0 && queued.isEmpty();
+            }
+            if (complete) {
+                done.complete(null);
+            }
+            return done;
+        }
+
+        /**
+         * @return the number of distinct domains added so far
+         */
+        public synchronized int size() {
+            return added.size();
         }
-        return Optional.empty();
+
+        private void next() {
+            String domain;
+            boolean complete = false;
+            synchronized (this) {
+                domain = lanes < maxInFlight ? nextUncached() : null;
+                if (domain != null) {
+                    lanes++;
+                } else {
+                    complete = finished && lanes == 0 && queued.isEmpty();
+                }
+            }
+            if (domain != null) {
+                resolve(domain, retries);
+            } else if (complete) {
+                done.complete(null);
+            }
+        }
+
+        /**
+         * Continues asynchronously, so a run of answers that complete at once (e.g. unparsable names) does not
+         * recurse through the whole list.
+         */
+        private void resolve(String domain, int retriesLeft) {
+            CompletableFuture<MailServerLookup> lookup = cache.get(domain, (key, executor) -> lookup(key));
+
+            lookup.whenCompleteAsync((result, e) -> {
+                if (e != null && retriesLeft > 0) {
+                    log.debug("Retrying mail server lookup for {}: {}", domain, e.getMessage());
+                    // Failed lookups are dropped from the cache, but possibly not before this callback runs.
+                    cache.asMap().remove(domain, lookup);
+                    resolve(domain, retriesLeft - 1);
+                    return;
+                }
+                synchronized (this) {
+                    lanes--;
+                }
+                next();
+            });
+        }
+
+        private String nextUncached() {
+            String domain;
+            while ((domain = queued.poll()) != null) {
+                if (cache.getIfPresent(domain) == null) {
+                    return domain;
+                }
+            }
+            return null;
+        }
+
+    }
+
+    /**
+     * A cached lookup result: the mail servers in order of preference, or none for negative answers,
+     * and how long it may be reused.
+     */
+    @Getter
+    private static class MailServerLookup {
+
+        private final List<String> hosts;
+        private final Duration ttl;
+
+        MailServerLookup(List<String> hosts, Duration ttl) {
+            this.hosts = hosts;
+            this.ttl = ttl;
+        }
+
+    }
+
+    private static class TtlExpiry implements Expiry<String, MailServerLookup> {
+
+        @Override
+        public long expireAfterCreate(String domain, MailServerLookup lookup, long currentTime) {
+            return lookup.getTtl().toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String domain, MailServerLookup lookup, long currentTime, long currentDuration) {
+            return lookup.getTtl().toNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String domain, MailServerLookup lookup, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
     }
 
 }
@@ -0,0 +1,112 @@
+package com.orvo.emailgenerator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.model.entity.DomainPatternStat;
+import com.orvo.emailgenerator.repository.DomainPatternStatRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learns which email pattern each domain uses from the candidates its mail server accepted, so later leads of the
+ * domain try the most successful pattern first. Hits are stored in {@code domain_pattern_stats} and survive
+ * restarts; recently used domains are kept in memory.
+ */
+@Slf4j
+@Service
+public class DomainPatternStats {
+
+    private final EmailProperties.PatternStats patternStatsProperties;
+    private final DomainPatternStatRepository domainPatternStatRepository;
+    private final Cache<String, Map<String, Integer>> hitsByDomain;
+
+    public DomainPatternStats(EmailProperties emailProperties, DomainPatternStatRepository domainPatternStatRepository) {
+        this.patternStatsProperties = emailProperties.getPatternStats();
+        this.domainPatternStatRepository = domainPatternStatRepository;
+        this.hitsByDomain = Caffeine.newBuilder()
+                .maximumSize(patternStatsProperties.getMaxDomains())
+                .build();
+    }
+
+    /**
+     * Orders the patterns by their hits on the domain, most successful first; patterns with equal hits keep
+     * their given order.
+     *
+     * @param domain   the domain of the leads
+     * @param patterns the available pattern templates, in default order
+     * @return the ranking to generate candidates from
+     */
+    public PatternRanking rank(String domain, Collection<String> patterns) {
+        Map<String, Integer> hits = getHits(domain);
+        List<String> ordered = patterns.stream()
+                .sorted(Comparator.comparingInt((String pattern) -> hits.getOrDefault(pattern, 0)).reversed())
+                .toList();
+
+        int topHits = hits.getOrDefault(ordered.getFirst(), 0);
+        int totalHits = hits.values().stream().mapToInt(Integer::intValue).sum();
+        boolean confirmed = topHits >= patternStatsProperties.getConfirmationHits()
+                && topHits >= totalHits * patternStatsProperties.getConfirmationShare();
+
+        return new PatternRanking(domain, ordered, confirmed);
+    }
+
+    /**
+     * Records that the domain's mail server accepted a candidate built from the pattern.
+     */
+    @Transactional
+    public void recordHit(String domain, String pattern) {
+        getHits(domain).merge(pattern, 1, Integer::sum);
+        domainPatternStatRepository.recordHit(domain, pattern, LocalDateTime.now());
+        log.debug("Pattern {} confirmed for domain {}", pattern, domain);
+    }
+
+    /**
+     * Returns the cached hits of the domain, loading them on a miss. The query runs outside the cache's own
+     * compute: blocking inside it would pin the carrier of the calling virtual thread while it waits for a
+     * database connection. Concurrent misses on one domain may both query; the first result is kept.
+     */
+    private Map<String, Integer> getHits(String domain) {
+        Map<String, Integer> hits = hitsByDomain.getIfPresent(domain);
+
+        if (hits != null) {
+            return hits;
+        }
+        Map<String, Integer> loaded = load(domain);
+        Map<String, Integer> existing = hitsByDomain.asMap().putIfAbsent(domain, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private Map<String, Integer> load(String domain) {
+        Map<String, Integer> hits = new ConcurrentHashMap<>();
+        for (DomainPatternStat stat : domainPatternStatRepository.findAllByIdDomain(domain)) {
+            hits.put(stat.getId().getPattern(), stat.getHits());
+        }
+        return hits;
+    }
+
+    /**
+     * The patterns of one domain in the order they should be tried. Once the domain's convention is confirmed,
+     * candidates are worth probing one at a time, stopping at the first hit.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class PatternRanking {
+
+        private final String domain;
+        private final List<String> patterns;
+        private final boolean confirmed;
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.orvo.emailgenerator.service;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled email pattern such as {@code {first}.{l}}: literal text and name placeholders, resolved once.
+ * <p>
+ * Supported placeholders are {@code {first}}, {@code {last}}, {@code {f}} (first initial) and {@code {l}}
+ * (last initial).
+ */
+class EmailPatternTemplate {
+
+    enum Part {
+        FIRST, LAST, FIRST_INITIAL, LAST_INITIAL
+    }
+
+    @Getter
+    private final String template;
+
+    /**
+     * Placeholder of each segment, or null where the segment is the literal at the same index.
+     */
+    private final Part[] parts;
+    private final String[] literals;
+
+    private EmailPatternTemplate(String template, Part[] parts, String[] literals) {
+        this.template = template;
+        this.parts = parts;
+        this.literals = literals;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the template is malformed, uses an unknown placeholder or has none
+     */
+    static EmailPatternTemplate compile(String template) {
+        List<Part> parts = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        int position = 0;
+
+        while (position < template.length()) {
+            int open = template.indexOf('{', position);
+            if (open < 0) {
+                open = template.length();
+            }
+            if (open > position) {
+                String literal = template.substring(position, open);
+                if (literal.indexOf('}') >= 0 || literal.indexOf('@') >= 0) {
+                    throw new IllegalArgumentException("Malformed email pattern: " + template);
+                }
+                parts.add(null);
+                literals.add(literal);
+            }
+            if (open == template.length()) {
+                break;
+            }
+
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in email pattern: " + template);
+            }
+            parts.add(toPart(template.substring(open + 1, close), template));
+            literals.add(null);
+            position = close + 1;
+        }
+
+        if (parts.stream().allMatch(part -> part == null)) {
+            throw new IllegalArgumentException("Email pattern has no placeholder: " + template);
+        }
+        return new EmailPatternTemplate(template, parts.toArray(Part[]::new), literals.toArray(String[]::new));
+    }
+
+    /**
+     * Appends the local part built from the name.
+     *
+     * @return false, with the buffer in an undefined state, if a placeholder the pattern needs is empty for this name
+     */
+    boolean appendLocalPart(StringBuilder out, NormalizedName name) {
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i] == null) {
+                out.append(literals[i]);
+                continue;
+            }
+            String value = name.get(parts[i]);
+            if (value.isEmpty()) {
+                return false;
+            }
+            out.append(value);
+        }
+        return true;
+    }
+
+    private static Part toPart(String placeholder, String template) {
+        return switch (placeholder) {
+            case "first" -> Part.FIRST;
+            case "last" -> Part.LAST;
+            case "f" -> Part.FIRST_INITIAL;
+            case "l" -> Part.LAST_INITIAL;
+            default -> throw new IllegalArgumentException("Unknown placeholder {" + placeholder + "} in email pattern: " + template);
+        };
+    }
+
+    /**
+     * A lead's name reduced to what can appear in a local part, computed once per lead.
+     */
+    static class NormalizedName {
+
+        private final String first;
+        private final String last;
+        private final String firstInitial;
+        private final String lastInitial;
+
+        NormalizedName(String first, String last) {
+            this.first = first;
+            this.last = last;
+            this.firstInitial = first.isEmpty() ? "" : first.substring(0, 1);
+            this.lastInitial = last.isEmpty() ? "" : last.substring(0, 1);
+        }
+
+        private String get(Part part) {
+            return switch (part) {
+                case FIRST -> first;
+                case LAST -> last;
+                case FIRST_INITIAL -> firstInitial;
+                case LAST_INITIAL -> lastInitial;
+            };
+        }
+
+    }
+
+}
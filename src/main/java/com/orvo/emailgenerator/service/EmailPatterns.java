@@ -0,0 +1,100 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.model.EmailCandidate;
+import com.orvo.emailgenerator.model.EmailComponents;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The candidate email patterns of {@code orvo.email.patterns}, compiled once at startup.
+ * <p>
+ * Names are normalized once per lead: lower-cased, transliterated ({@code ß → ss}, {@code ø → o}, ...), stripped
+ * of accents, and reduced to letters and digits, so hyphenated and multi-part names are joined
+ * ({@code "van der Berg" → "vanderberg"}). Patterns needing a part that is empty for the lead are skipped.
+ */
+@Slf4j
+@Component
+public class EmailPatterns {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Map<Character, String> TRANSLITERATIONS = Map.ofEntries(
+            Map.entry('ß', "ss"), Map.entry('ø', "o"), Map.entry('æ', "ae"), Map.entry('œ', "oe"),
+            Map.entry('ł', "l"), Map.entry('đ', "d"), Map.entry('ð', "d"), Map.entry('þ', "th"),
+            Map.entry('ı', "i"), Map.entry('ħ', "h"));
+
+    private final SequencedMap<String, EmailPatternTemplate> templates = new LinkedHashMap<>();
+
+    public EmailPatterns(EmailProperties emailProperties) {
+        for (String template : emailProperties.getPatterns()) {
+            templates.put(template, EmailPatternTemplate.compile(template));
+        }
+        if (templates.isEmpty()) {
+            throw new IllegalArgumentException("No email patterns configured in orvo.email.patterns");
+        }
+        log.info("Compiled email patterns: {}", templates.keySet());
+    }
+
+    /**
+     * @return the pattern templates, in configured order
+     */
+    public SequencedSet<String> getTemplates() {
+        return Collections.unmodifiableSequencedSet(templates.sequencedKeySet());
+    }
+
+    /**
+     * Builds the candidates of a lead.
+     *
+     * @param components the lead's name and domain
+     * @param order      the templates to use, in the order candidates should be returned
+     * @return one candidate per template that applies to the name
+     */
+    public List<EmailCandidate> generate(EmailComponents components, List<String> order) {
+        EmailPatternTemplate.NormalizedName name = new EmailPatternTemplate.NormalizedName(
+                normalize(components.getFirstName()), normalize(components.getLastName()));
+        String domain = components.getCompanyDomain().toLowerCase(Locale.ROOT);
+        List<EmailCandidate> candidates = new ArrayList<>(order.size());
+        StringBuilder buffer = new StringBuilder(64);
+
+        for (String template : order) {
+            buffer.setLength(0);
+            if (templates.get(template).appendLocalPart(buffer, name)) {
+                candidates.add(new EmailCandidate(template, buffer.append('@').append(domain).toString()));
+            }
+        }
+        return candidates;
+    }
+
+    static String normalize(String namePart) {
+        if (namePart == null || namePart.isEmpty()) {
+            return "";
+        }
+        String lower = namePart.toLowerCase(Locale.ROOT);
+        StringBuilder transliterated = new StringBuilder(lower.length());
+
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            String replacement = TRANSLITERATIONS.get(c);
+            if (replacement != null) {
+                transliterated.append(replacement);
+            } else {
+                transliterated.append(c);
+            }
+        }
+
+        String decomposed = COMBINING_MARKS.matcher(Normalizer.normalize(transliterated, Normalizer.Form.NFD)).replaceAll("");
+        StringBuilder out = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+}
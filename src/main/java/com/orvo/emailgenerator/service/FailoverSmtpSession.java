@@ -0,0 +1,146 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.SmtpReply;
+import jakarta.mail.MessagingException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SmtpSession} over all mail servers of a domain. It talks to the most preferred server that can be used, and
+ * moves on to the next one as soon as its server stops answering, be it because the connection dropped or because
+ * its circuit opened. The probes left unanswered are asked again on the new server, so an outage of one MX host
+ * does not turn them into misses. Probes no server answered keep their {@link SmtpReply#NO_REPLY} reply.
+ * <p>
+ * Servers are tried in order of preference, each at most once per session; hosts whose circuit is open are skipped.
+ * <p>
+ * Instances are not thread-safe and must be closed once the work for the domain is done.
+ */
+@Slf4j
+class FailoverSmtpSession implements SmtpSession {
+
+    /**
+     * Opens a session with a single mail server.
+     */
+    interface HostSessionOpener {
+
+        SmtpSession open(String host) throws MessagingException;
+
+    }
+
+    private final List<String> mailServers;
+    private final MailHostCircuitBreaker circuitBreaker;
+    private final HostSessionOpener opener;
+
+    private int nextServer;
+    private SmtpSession session;
+
+    FailoverSmtpSession(List<String> mailServers, MailHostCircuitBreaker circuitBreaker, HostSessionOpener opener) {
+        this.mailServers = mailServers;
+        this.circuitBreaker = circuitBreaker;
+        this.opener = opener;
+    }
+
+    /**
+     * Opens a session with the first usable mail server.
+     *
+     * @throws MessagingException if no mail server could be used; carries the last failure, if any
+     */
+    void open() throws MessagingException {
+        session = openNext();
+    }
+
+    @Override
+    public String getHost() {
+        return session.getHost();
+    }
+
+    @Override
+    public SmtpReply verify(String email) {
+        SmtpReply reply = session.verify(email);
+
+        while (reply.getCode() == SmtpReply.NO_REPLY && failOver(reply)) {
+            reply = session.verify(email);
+        }
+        return reply;
+    }
+
+    @Override
+    public List<SmtpReply> verifyAll(List<String> emails) {
+        List<SmtpReply> replies = new ArrayList<>(session.verifyAll(emails));
+        List<Integer> unanswered = unanswered(replies);
+
+        while (!unanswered.isEmpty() && failOver(replies.get(unanswered.getFirst()))) {
+            List<SmtpReply> retried = session.verifyAll(unanswered.stream().map(emails::get).toList());
+            for (int i = 0; i < unanswered.size(); i++) {
+                replies.set(unanswered.get(i), retried.get(i));
+            }
+            unanswered = unanswered(replies);
+        }
+        return replies;
+    }
+
+    @Override
+    public boolean isPipelining() {
+        return session.isPipelining();
+    }
+
+    @Override
+    public void close() {
+        session.close();
+    }
+
+    /**
+     * Replaces the current session with one on the next usable mail server. The current session is kept if there
+     * is none, so the caller can still close it.
+     *
+     * @param failure the reply that showed the current server stopped answering
+     * @return true if the session moved to another server
+     */
+    private boolean failOver(SmtpReply failure) {
+        SmtpSession next;
+        try {
+            next = openNext();
+        } catch (MessagingException e) {
+            log.debug("No mail server left after {}: {}", session.getHost(), e.getMessage());
+            return false;
+        }
+        log.warn("Mail server {} stopped answering ({}), failing over to {}", session.getHost(), failure.getMessage(),
+                next.getHost());
+        session.close();
+        session = next;
+        return true;
+    }
+
+    private SmtpSession openNext() throws MessagingException {
+        MessagingException lastFailure = null;
+
+        while (nextServer < mailServers.size()) {
+            String mailServer = mailServers.get(nextServer++);
+
+            if (!circuitBreaker.allowRequest(mailServer)) {
+                log.debug("Skipping mail server {}: circuit open", mailServer);
+                continue;
+            }
+            try {
+                return opener.open(mailServer);
+            } catch (MessagingException e) {
+                log.warn("Mail server {} unavailable, trying next: {}", mailServer, e.getMessage());
+                lastFailure = e;
+            }
+        }
+        throw lastFailure != null ? lastFailure : new MessagingException("No available mail server among " + mailServers);
+    }
+
+    private static List<Integer> unanswered(List<SmtpReply> replies) {
+        List<Integer> unanswered = new ArrayList<>();
+        for (int i = 0; i < replies.size(); i++) {
+            if (replies.get(i).getCode() == SmtpReply.NO_REPLY) {
+                unanswered.add(i);
+            }
+        }
+        return unanswered;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Backoff for leads whose probes were answered only with temporary failures (421/450/451), typically greylisting,
+ * or not answered at all because every mail server of their domain was unreachable. Such leads do not hold up their
+ * chunk: the chunk is stored without them, and they are queued again as a chunk of their own that becomes claimable
+ * after an exponentially growing delay. Retries thus go through the work queue and the {@link VerificationScheduler}
+ * like any other chunk, and no worker waits for them.
+ */
+@Service
+public class GreylistRetryScheduler {
+
+    private final EmailProperties.Greylisting greylisting;
+
+    public GreylistRetryScheduler(EmailProperties emailProperties) {
+        this.greylisting = emailProperties.getGreylisting();
+    }
+
+    /**
+     * The delay before the next retry of leads deferred {@code retries} times so far.
+     *
+     * @param retries the retries made so far
+     * @return the delay, or empty once {@code orvo.email.greylisting.max-attempts} retries have been made
+     */
+    public Optional<Duration> nextRetry(int retries) {
+        if (retries >= greylisting.getMaxAttempts()) {
+            return Optional.empty();
+        }
+        double factor = Math.pow(greylisting.getMultiplier(), retries);
+        Duration delay = Duration.ofMillis((long) (greylisting.getInitialDelay().toMillis() * factor));
+        return Optional.of(delay.compareTo(greylisting.getMaxDelay()) > 0 ? greylisting.getMaxDelay() : delay);
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.SmtpReply;
+import com.sun.mail.smtp.SMTPTransport;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * {@link SmtpSession} over a blocking Jakarta Mail {@link SMTPTransport}; the conversation holds its calling thread
+ * for every network round trip.
+ * <p>
+ * The connection is opened and {@code MAIL FROM} is sent once; every {@link #verify(String)} then costs a single
+ * {@code RCPT TO}. After {@code recipientsPerTransaction} recipients the transaction is restarted with
+ * {@code RSET}, and a dropped connection is re-established on the next probe. No {@code DATA} is ever sent.
+ * <p>
+ * The session holds one of its host's session slots until closed, and every connection and {@code RCPT TO}
+ * is paced by the host's rate limit (see {@link MailHostLimiter}). Connection failures and I/O errors are reported
+ * to the host's {@link MailHostCircuitBreaker}, and the latencies of the host to its {@link MailHostTimeouts}.
+ * <p>
+ * Instances are not thread-safe and must be closed once the work for the host is done.
+ */
+@Slf4j
+class JakartaSmtpSession implements SmtpSession {
+
+    @Getter
+    private final String host;
+    private final Properties properties;
+    private final String mailFrom;
+    private final int recipientsPerTransaction;
+    private final MailHostLimiter.HostPermit permit;
+    private final MailHostCircuitBreaker circuitBreaker;
+    private final MailHostTimeouts timeouts;
+    private final SmtpMetrics smtpMetrics;
+
+    private SMTPTransport transport;
+    private int recipientsInTransaction;
+
+    JakartaSmtpSession(String host, Properties properties, String mailFrom, int recipientsPerTransaction,
+                       MailHostLimiter.HostPermit permit, MailHostCircuitBreaker circuitBreaker, MailHostTimeouts timeouts,
+                       SmtpMetrics smtpMetrics) {
+        this.host = host;
+        this.properties = properties;
+        this.mailFrom = mailFrom;
+        this.recipientsPerTransaction = recipientsPerTransaction;
+        this.permit = permit;
+        this.circuitBreaker = circuitBreaker;
+        this.timeouts = timeouts;
+        this.smtpMetrics = smtpMetrics;
+    }
+
+    /**
+     * Connects to the host and starts the first mail transaction.
+     *
+     * @throws MessagingException if the connection fails or the sender is not accepted
+     */
+    void open() throws MessagingException {
+        awaitRate();
+        transport = (SMTPTransport) Session.getInstance(properties).getTransport("smtp");
+        long start = smtpMetrics.startConnect();
+        try {
+            transport.connect();
+        } catch (MessagingException e) {
+            smtpMetrics.recordConnect(host, start, false);
+            recordTimeout(MailHostTimeouts.Phase.CONNECT, start, e);
+            transport = null;
+            circuitBreaker.recordFailure(host);
+            throw e;
+        }
+        smtpMetrics.recordConnect(host, start, true);
+        timeouts.record(host, MailHostTimeouts.Phase.CONNECT, System.nanoTime() - start);
+        circuitBreaker.recordSuccess(host);
+        startTransaction();
+    }
+
+    @Override
+    public SmtpReply verify(String email) {
+        try {
+            if (transport == null) {
+                if (!circuitBreaker.allowRequest(host)) {
+                    return SmtpReply.noReply("Circuit open for " + host);
+                }
+                open();
+            } else if (recipientsInTransaction >= recipientsPerTransaction) {
+                resetTransaction();
+            }
+
+            awaitRate();
+            long start = smtpMetrics.startProbes(1);
+            int code;
+            try {
+                code = transport.simpleCommand("RCPT TO:<" + email.trim() + ">");
+            } catch (MessagingException e) {
+                recordTimeout(MailHostTimeouts.Phase.RCPT_TO, start, e);
+                throw e;
+            } finally {
+                smtpMetrics.finishProbes(1);
+            }
+            recipientsInTransaction++;
+            SmtpReply reply = new SmtpReply(code, transport.getLastServerResponse());
+            smtpMetrics.recordCommand(SmtpMetrics.RCPT_TO, host, start, reply);
+            timeouts.record(host, MailHostTimeouts.Phase.RCPT_TO, System.nanoTime() - start);
+            log.debug("RCPT TO {} response: {}", email, code);
+
+            if (code == 421) {
+                // The server is closing the channel; reconnect on the next probe.
+                disconnect();
+            }
+            return reply;
+        } catch (MessagingException e) {
+            log.warn("SMTP conversation with {} failed: {}", host, e.getMessage());
+            if (e.getCause() instanceof IOException) {
+                // Read or write timeouts and dropped connections count against the host.
+                circuitBreaker.recordFailure(host);
+            }
+            disconnect();
+            return SmtpReply.noReply(e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+        permit.close();
+    }
+
+    private void awaitRate() throws MessagingException {
+        try {
+            permit.awaitRate();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for the rate limit of " + host, e);
+        }
+    }
+
+    private void recordTimeout(MailHostTimeouts.Phase phase, long start, MessagingException failure) {
+        if (MailHostTimeouts.isTimeout(failure)) {
+            timeouts.record(host, phase, System.nanoTime() - start);
+        }
+    }
+
+    private void startTransaction() throws MessagingException {
+        long start = System.nanoTime();
+        int mailFromCode;
+        try {
+            mailFromCode = transport.simpleCommand("MAIL FROM:<" + mailFrom + ">");
+        } catch (MessagingException e) {
+            recordTimeout(MailHostTimeouts.Phase.MAIL_FROM, start, e);
+            throw e;
+        }
+        smtpMetrics.recordCommand(SmtpMetrics.MAIL_FROM, host, start,
+                new SmtpReply(mailFromCode, transport.getLastServerResponse()));
+        timeouts.record(host, MailHostTimeouts.Phase.MAIL_FROM, System.nanoTime() - start);
+        log.debug("MAIL FROM response: {}", mailFromCode);
+
+        if (mailFromCode != 250) {
+            throw new MessagingException("MAIL FROM not accepted: " + transport.getLastServerResponse());
+        }
+        recipientsInTransaction = 0;
+    }
+
+    private void resetTransaction() throws MessagingException {
+        int code = transport.simpleCommand("RSET");
+
+        if (code != 250) {
+            throw new MessagingException("RSET not accepted: " + transport.getLastServerResponse());
+        }
+        startTransaction();
+    }
+
+    private void disconnect() {
+        if (transport == null) {
+            return;
+        }
+        try {
+            // Sends QUIT before closing the socket.
+            transport.close();
+        } catch (Exception e) {
+            log.warn("Error closing SMTP connection to {}: {}", host, e.getMessage());
+        } finally {
+            transport = null;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import jakarta.mail.MessagingException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Default engine: one blocking Jakarta Mail transport per session. The transport cannot change its timeouts once
+ * connected, so each session gets the host's current timeouts from {@link MailHostTimeouts} when it is opened: the
+ * connect timeout for the connection, and the longest of the others for every reply.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "orvo.email.smtp", name = "engine", havingValue = "jakarta", matchIfMissing = true)
+public class JakartaSmtpSessionFactory implements SmtpSessionFactory {
+
+    private final EmailProperties emailProperties;
+    private final MailHostCircuitBreaker mailHostCircuitBreaker;
+    private final MailHostTimeouts mailHostTimeouts;
+    private final SmtpMetrics smtpMetrics;
+
+    @Override
+    public SmtpSession open(String host, MailHostLimiter.HostPermit permit) throws MessagingException {
+        JakartaSmtpSession session = new JakartaSmtpSession(host, getProperties(host), emailProperties.getUsername(),
+                emailProperties.getSmtp().getRecipientsPerTransaction(), permit, mailHostCircuitBreaker, mailHostTimeouts,
+                smtpMetrics);
+        try {
+            session.open();
+            return session;
+        } catch (MessagingException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    private Properties getProperties(String smtpHost) {
+        Duration connectTimeout = mailHostTimeouts.getTimeout(smtpHost, MailHostTimeouts.Phase.CONNECT);
+        // The connect latency of this engine includes the greeting, which is read with the reply timeout.
+        long replyTimeout = Math.max(connectTimeout.toMillis(), Math.max(
+                mailHostTimeouts.getTimeout(smtpHost, MailHostTimeouts.Phase.MAIL_FROM).toMillis(),
+                mailHostTimeouts.getTimeout(smtpHost, MailHostTimeouts.Phase.RCPT_TO).toMillis()));
+
+        Properties props = new Properties();
+        props.put("mail.smtp.host", smtpHost);
+        props.put("mail.smtp.port", emailProperties.getPort());
+        props.put("mail.smtp.connectiontimeout", (int) connectTimeout.toMillis());
+        props.put("mail.smtp.timeout", (int) replyTimeout);
+        props.put("mail.smtp.writetimeout", (int) replyTimeout);
+        return props;
+    }
+
+}
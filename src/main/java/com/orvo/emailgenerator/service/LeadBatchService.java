@@ -0,0 +1,159 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import com.orvo.emailgenerator.model.LeadStatus;
+import com.orvo.emailgenerator.model.dto.response.BatchStatusResponse;
+import com.orvo.emailgenerator.model.entity.LeadBatch;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Accepts lead uploads as background batches and reports their progress.
+ * <p>
+ * An upload is spooled and answered right away; a background task then splits it into chunks that are queued in
+ * the database by {@link LeadBatchStore}. The {@link LeadBatchWorker}s of every instance process them, so a batch
+ * is not tied to the instance that accepted it and survives restarts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LeadBatchService {
+
+    private final LeadService leadService;
+    private final LeadBatchStore leadBatchStore;
+    private final BatchProperties batchProperties;
+    private final ExecutorService leadIntakeExecutor;
+
+    /**
+     * Accepts an uploaded CSV and queues its rows in the background. Only the header is checked before the batch
+     * is returned, so the request does not grow with the upload.
+     *
+     * @param file   the uploaded CSV
+     * @param weight the batch's share of the verification capacity relative to the other batches in progress,
+     *               from 1 to {@code orvo.batch.fair-share.max-weight}
+     * @return the initial status of the accepted batch
+     */
+    public BatchStatusResponse submit(MultipartFile file, int weight) {
+        int maxWeight = batchProperties.getFairShare().getMaxWeight();
+        if (weight < 1 || weight > maxWeight) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Weight must be between 1 and " + maxWeight);
+        }
+
+        UUID batchId = UUID.randomUUID();
+        Path csvFile = spool(file);
+
+        try {
+            leadService.validateHeader(csvFile);
+            leadBatchStore.create(batchId, weight);
+            leadIntakeExecutor.execute(() -> intake(batchId, csvFile));
+        } catch (RejectedExecutionException e) {
+            leadBatchStore.failBatch(batchId, "Instance shut down before the upload was queued");
+            deleteQuietly(csvFile);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shutting down, try again later");
+        } catch (RuntimeException e) {
+            deleteQuietly(csvFile);
+            throw e;
+        }
+
+        log.info("Batch {} accepted ({} bytes)", batchId, file.getSize());
+        return leadBatchStore.find(batchId).map(this::toResponse).orElseThrow();
+    }
+
+    /**
+     * Returns the current progress of a batch, as recorded by the instances processing it.
+     *
+     * @param batchId the batch identifier returned by {@link #submit(MultipartFile, int)}
+     * @return the batch status, or empty if the batch is unknown
+     */
+    public Optional<BatchStatusResponse> getStatus(UUID batchId) {
+        return leadBatchStore.find(batchId).map(this::toResponse);
+    }
+
+    /**
+     * Queues the rows of an accepted upload. Every chunk is committed on its own, so workers start on the first
+     * chunks while the rest is read and no transaction grows with the upload; the batch can only complete once
+     * its total is recorded. A batch whose upload cannot be read to the end is failed.
+     */
+    private void intake(UUID batchId, Path csvFile) {
+        try {
+            int[] chunkNo = {0};
+            int totalRows = leadService.readChunks(batchId, csvFile,
+                    rows -> leadBatchStore.addChunk(batchId, chunkNo[0]++, rows));
+            leadBatchStore.finishIntake(batchId, totalRows);
+
+            log.info("Batch {} queued: {} rows in {} chunks", batchId, totalRows, chunkNo[0]);
+        } catch (RuntimeException e) {
+            // An interrupted virtual thread cannot use its database connection; see LeadBatchWorker#handBack.
+            boolean interrupted = Thread.interrupted();
+            log.error("Batch {} failed while queuing its upload: {}", batchId, e.getMessage(), e);
+            try {
+                leadBatchStore.failBatch(batchId, "Upload could not be queued: " + e.getMessage());
+            } catch (RuntimeException failure) {
+                log.warn("Could not fail batch {}; it is failed once orvo.batch.queue.intake-timeout has passed: {}",
+                        batchId, failure.getMessage());
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            deleteQuietly(csvFile);
+        }
+    }
+
+    /**
+     * Spools the upload to a temporary file, because the multipart content may not be readable twice.
+     */
+    private Path spool(MultipartFile file) {
+        try {
+            Path csvFile = Files.createTempFile("orvo-batch-", ".csv");
+            file.transferTo(csvFile);
+            return csvFile;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}: {}", file, e.getMessage());
+        }
+    }
+
+    private BatchStatusResponse toResponse(LeadBatch batch) {
+        Map<LeadStatus, Integer> statusCounts = new EnumMap<>(LeadStatus.class);
+        for (LeadStatus status : LeadStatus.values()) {
+            statusCounts.put(status, batch.getStatusCounts().getOrDefault(status, 0));
+        }
+
+        return BatchStatusResponse.builder()
+                .batchId(batch.getId())
+                .state(batch.getState())
+                .weight(batch.getWeight())
+                .totalRows(batch.getTotalRows())
+                .processedRows(batch.getProcessedRows())
+                .emailsFound(batch.getEmailsFound())
+                .statusCounts(statusCounts)
+                .createdAt(batch.getCreatedAt())
+                .startedAt(batch.getStartedAt())
+                .finishedAt(batch.getFinishedAt())
+                .error(batch.getError())
+                .build();
+    }
+
+}
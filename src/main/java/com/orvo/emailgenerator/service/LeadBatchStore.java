@@ -0,0 +1,215 @@
+package com.orvo.emailgenerator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orvo.emailgenerator.model.BatchState;
+import com.orvo.emailgenerator.model.LeadBatchChunk;
+import com.orvo.emailgenerator.model.LeadStatus;
+import com.orvo.emailgenerator.model.entity.Lead;
+import com.orvo.emailgenerator.model.entity.LeadBatch;
+import com.orvo.emailgenerator.repository.LeadBatchChunkRepository;
+import com.orvo.emailgenerator.repository.LeadBatchRepository;
+import com.orvo.emailgenerator.repository.LeadRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable state of lead batches, shared by all instances: the {@code lead_batches} records and the work queue
+ * of their chunks. A chunk's leads, its completion and the batch counts are committed together, so every row
+ * is stored exactly once even when chunks are retried after a crash. Chunks may be processed while the rest of
+ * the upload is still being queued; a batch completes only once its total is known and all of its chunks are done,
+ * the chunks of deferred leads queued for a retry included.
+ * <p>
+ * Transactions lock chunk rows before the batch row, so concurrent completions and failures cannot deadlock.
+ */
+@Service
+@RequiredArgsConstructor
+public class LeadBatchStore {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final LeadBatchRepository leadBatchRepository;
+    private final LeadBatchChunkRepository leadBatchChunkRepository;
+    private final LeadRepository leadRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Records a newly accepted batch; its chunks are added with {@link #addChunk(UUID, int, List)}, and
+     * {@link #finishIntake(UUID, int)} marks the end of its upload.
+     *
+     * @param batchId the batch identifier
+     * @param weight  the batch's share of the verification capacity relative to the other batches
+     */
+    public void create(UUID batchId, int weight) {
+        leadBatchRepository.save(LeadBatch.builder()
+                .id(batchId)
+                .state(BatchState.QUEUED)
+                .weight(weight)
+                .weightedRows(leadBatchRepository.findLowestWeightedRows())
+                .statusCounts(Map.of())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Queues one chunk of a batch; it is committed on its own and may be claimed right away.
+     */
+    public void addChunk(UUID batchId, int chunkNo, List<String[]> rows) {
+        leadBatchChunkRepository.insert(batchId, chunkNo, rows);
+    }
+
+    /**
+     * Records the total of a batch whose upload has been queued to the end. A batch whose chunks are all done
+     * already, or that has none because the upload held no rows, is completed.
+     */
+    @Transactional
+    public void finishIntake(UUID batchId, int totalRows) {
+        leadBatchRepository.setTotalRows(batchId, totalRows);
+
+        // The batch row is locked by now; see completeChunk.
+        if (leadBatchChunkRepository.countUnfinished(batchId) == 0) {
+            leadBatchRepository.markCompleted(batchId, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Finds the batches whose upload was accepted more than {@code timeout} ago and is still not queued to the end,
+     * because the instance reading it died.
+     */
+    public List<UUID> findAbandonedIntakes(Duration timeout) {
+        return leadBatchRepository.findUnfinishedIntakes(LocalDateTime.now().minus(timeout));
+    }
+
+    /**
+     * Leases the next chunk from the queue, charges its rows to its batch's fair share and marks the batch
+     * as running.
+     *
+     * @param owner           the claiming worker
+     * @param lease           how long the chunk stays leased unless renewed
+     * @param excludedBatches batches whose chunks must not be claimed
+     * @return the claimed chunk, or empty if there is no work
+     */
+    @Transactional
+    public Optional<LeadBatchChunk> claim(String owner, Duration lease, Collection<UUID> excludedBatches) {
+        Optional<LeadBatchChunk> chunk = leadBatchChunkRepository.claim(owner, lease, excludedBatches);
+        chunk.ifPresent(claimed -> leadBatchRepository.markClaimed(claimed.getBatchId(), claimed.getRows().size(),
+                LocalDateTime.now()));
+        return chunk;
+    }
+
+    public boolean renewLease(LeadBatchChunk chunk, String owner, Duration lease) {
+        return leadBatchChunkRepository.renewLease(chunk.getId(), owner, lease);
+    }
+
+    public void release(LeadBatchChunk chunk, String owner, String error) {
+        leadBatchChunkRepository.release(chunk.getId(), owner, truncate(error));
+    }
+
+    public void handBack(LeadBatchChunk chunk, String owner) {
+        leadBatchChunkRepository.handBack(chunk.getId(), owner);
+    }
+
+    /**
+     * Stores the leads of a chunk, marks the chunk as done and adds its counts to the batch; the batch is
+     * completed with its last chunk. Leads still {@link LeadStatus#VERIFICATION_PENDING} are not stored but queued
+     * again as a chunk available after {@code retryDelay}, which keeps the batch from completing until they are
+     * resolved. The rows of a retried chunk were counted with their first chunk, as pending, and are moved to
+     * their new status.
+     * <p>
+     * The counts follow what is stored: a lead whose email is already stored for the batch is counted as
+     * {@link LeadStatus#DUPLICATE_EMAIL}, and only stored emails count as found.
+     *
+     * @param chunk      the chunk the leads were generated from
+     * @param owner      the worker holding the chunk's lease
+     * @param leads      one lead per row of the chunk
+     * @param retryDelay when the pending leads are retried
+     * @return the number of leads inserted
+     * @throws IllegalStateException if the lease was lost, in which case nothing is stored
+     */
+    @Transactional
+    public int completeChunk(LeadBatchChunk chunk, String owner, List<Lead> leads, Duration retryDelay) {
+        if (!leadBatchChunkRepository.markDone(chunk.getId(), owner)) {
+            throw new IllegalStateException("Lease of chunk " + chunk.getChunkNo() + " of batch " + chunk.getBatchId() + " was lost");
+        }
+
+        List<Lead> resolved = new ArrayList<>(leads.size());
+        List<String[]> deferred = new ArrayList<>();
+        for (Lead lead : leads) {
+            if (lead.getStatus() == LeadStatus.VERIFICATION_PENDING) {
+                deferred.add(new String[]{lead.getFirstName(), lead.getLastName(), lead.getCompanyName(),
+                        lead.getCompanyDomain()});
+            } else {
+                resolved.add(lead);
+            }
+        }
+        List<Lead> inserted = leadRepository.insertIgnoringDuplicates(resolved);
+        if (!deferred.isEmpty()) {
+            leadBatchChunkRepository.insertRetry(chunk.getBatchId(), chunk.getChunkNo(), chunk.getRetries() + 1,
+                    deferred, retryDelay);
+        }
+
+        Map<LeadStatus, Integer> statusCounts = new EnumMap<>(LeadStatus.class);
+        for (LeadStatus status : LeadStatus.values()) {
+            statusCounts.put(status, 0);
+        }
+        boolean retried = chunk.getRetries() > 0;
+        statusCounts.put(LeadStatus.VERIFICATION_PENDING, deferred.size() - (retried ? leads.size() : 0));
+        statusCounts.put(LeadStatus.DUPLICATE_EMAIL, resolved.size() - inserted.size());
+        int emailsFound = 0;
+        for (Lead lead : inserted) {
+            statusCounts.merge(lead.getStatus(), 1, Integer::sum);
+            emailsFound += lead.getGeneratedEmail() != null ? 1 : 0;
+        }
+        leadBatchRepository.addProgress(chunk.getBatchId(), retried ? 0 : leads.size(), emailsFound,
+                toJson(statusCounts));
+
+        // The batch row is locked by now: of two last chunks completing at once, or of the last chunk and the end of
+        // the upload, the later one sees the other.
+        if (leadBatchChunkRepository.countUnfinished(chunk.getBatchId()) == 0) {
+            leadBatchRepository.markCompleted(chunk.getBatchId(), LocalDateTime.now());
+        }
+        return inserted.size();
+    }
+
+    /**
+     * Fails a batch and takes its unfinished chunks off the queue.
+     */
+    @Transactional
+    public void failBatch(UUID batchId, String error) {
+        String message = truncate(error);
+        leadBatchChunkRepository.failUnfinished(batchId, message);
+        leadBatchRepository.markFinished(batchId, BatchState.FAILED, message, LocalDateTime.now());
+    }
+
+    public Optional<LeadBatch> find(UUID batchId) {
+        return leadBatchRepository.findById(batchId);
+    }
+
+    public Optional<BatchState> findState(UUID batchId) {
+        return leadBatchRepository.findStateById(batchId);
+    }
+
+    private String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private String toJson(Map<LeadStatus, Integer> statusCounts) {
+        try {
+            return objectMapper.writeValueAsString(statusCounts);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize status counts", e);
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import com.orvo.emailgenerator.model.LeadBatchChunk;
+import com.orvo.emailgenerator.model.LeadStatus;
+import com.orvo.emailgenerator.model.entity.Lead;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Works off the lead batch queue: {@code orvo.batch.max-concurrent-jobs} workers per instance claim chunks of any
+ * batch, whichever instance accepted its upload, generate and verify their leads and store them. While a chunk is
+ * processed its lease is renewed every {@code orvo.batch.queue.heartbeat-interval}; if the instance dies, the lease
+ * runs out and another instance claims the chunk. A chunk claimed more than {@code max-attempts} times fails its batch.
+ * <p>
+ * Chunks are claimed fairly across batches by their weight, and one instance works on at most
+ * {@code orvo.batch.fair-share.max-in-flight-chunks} chunks of the same batch, so a large import leaves workers
+ * free for the uploads arriving after it.
+ * <p>
+ * Leads answered only with temporary failures do not hold up their chunk: they are queued again as a chunk of their
+ * own that is claimed once the backoff of the {@link GreylistRetryScheduler} has passed.
+ * <p>
+ * On shutdown, workers stop without storing the chunk in progress, whose probes may have been cut short, and
+ * hand it back to the queue.
+ * <p>
+ * Every {@code heartbeat-interval}, batches whose upload has not been queued to the end within
+ * {@code orvo.batch.queue.intake-timeout} are failed: the instance reading it died, and the batch would never
+ * complete.
+ */
+@Slf4j
+@Service
+public class LeadBatchWorker {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final LeadService leadService;
+    private final LeadBatchStore leadBatchStore;
+    private final LeadStreamService leadStreamService;
+    private final GreylistRetryScheduler greylistRetryScheduler;
+    private final BatchProperties batchProperties;
+    private final BatchProperties.Queue queueProperties;
+    private final ExecutorService leadBatchExecutor;
+    private final ScheduledExecutorService heartbeats;
+    private final String instanceId;
+    private final List<Future<?>> workers = new ArrayList<>();
+    private final ReentrantLock claimLock = new ReentrantLock();
+    private final Map<UUID, Integer> chunksInFlight = new HashMap<>();
+    private volatile CountDownLatch stopped = new CountDownLatch(0);
+    private volatile boolean running;
+
+    public LeadBatchWorker(LeadService leadService, LeadBatchStore leadBatchStore, LeadStreamService leadStreamService,
+                           GreylistRetryScheduler greylistRetryScheduler, BatchProperties batchProperties,
+                           ExecutorService leadBatchExecutor) {
+        this.leadService = leadService;
+        this.leadBatchStore = leadBatchStore;
+        this.leadStreamService = leadStreamService;
+        this.greylistRetryScheduler = greylistRetryScheduler;
+        this.batchProperties = batchProperties;
+        this.queueProperties = batchProperties.getQueue();
+        this.leadBatchExecutor = leadBatchExecutor;
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("lead-batch-heartbeat").factory());
+        this.instanceId = Optional.ofNullable(System.getenv("HOSTNAME")).orElse("orvo") + "-"
+                + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        int count = batchProperties.getMaxConcurrentJobs();
+        running = true;
+        stopped = new CountDownLatch(count);
+
+        for (int i = 0; i < count; i++) {
+            String owner = instanceId + "-" + i;
+            workers.add(leadBatchExecutor.submit(() -> work(owner)));
+        }
+        long sweepMillis = queueProperties.getHeartbeatInterval().toMillis();
+        heartbeats.scheduleWithFixedDelay(this::failAbandonedIntakes, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        log.info("Started {} lead batch workers as {}", count, instanceId);
+    }
+
+    /**
+     * Stops the workers before the executors and the database are shut down, so the chunks in progress can still
+     * be handed back.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        heartbeats.shutdownNow();
+        workers.forEach(worker -> worker.cancel(true));
+        workers.clear();
+
+        if (!stopped.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Lead batch workers did not stop in time; their chunks are claimed again once their leases expire");
+        }
+    }
+
+    private void work(String owner) {
+        try {
+            while (running) {
+                try {
+                    Optional<LeadBatchChunk> chunk = claim(owner);
+
+                    if (chunk.isPresent()) {
+                        try {
+                            process(chunk.get(), owner);
+                        } finally {
+                            finishClaim(chunk.get());
+                        }
+                    } else {
+                        Thread.sleep(queueProperties.getPollInterval());
+                    }
+                } catch (RuntimeException e) {
+                    if (!running) {
+                        return;
+                    }
+                    log.error("Lead batch worker {} failed: {}", owner, e.getMessage(), e);
+                    Thread.sleep(queueProperties.getPollInterval());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Claims the next chunk of a batch below its in-flight cap. Claims of this instance are serialized, so the cap
+     * holds; the lock is a {@link ReentrantLock}, which a virtual thread can hold across the database call without
+     * pinning its carrier.
+     */
+    private Optional<LeadBatchChunk> claim(String owner) {
+        claimLock.lock();
+        try {
+            int maxInFlight = batchProperties.getFairShare().getMaxInFlightChunks();
+            List<UUID> saturated = chunksInFlight.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= maxInFlight)
+                    .map(Map.Entry::getKey)
+                    .toList();
+
+            Optional<LeadBatchChunk> chunk = leadBatchStore.claim(owner, queueProperties.getLeaseDuration(), saturated);
+            chunk.ifPresent(claimed -> chunksInFlight.merge(claimed.getBatchId(), 1, Integer::sum));
+            return chunk;
+        } finally {
+            claimLock.unlock();
+        }
+    }
+
+    private void finishClaim(LeadBatchChunk chunk) {
+        claimLock.lock();
+        try {
+            chunksInFlight.computeIfPresent(chunk.getBatchId(), (batchId, count) -> count > 1 ? count - 1 : null);
+        } finally {
+            claimLock.unlock();
+        }
+    }
+
+    private void process(LeadBatchChunk chunk, String owner) {
+        if (chunk.getAttempts() > queueProperties.getMaxAttempts()) {
+            String error = "Chunk %d failed after %d attempts: %s".formatted(chunk.getChunkNo(), chunk.getAttempts() - 1,
+                    chunk.getError() != null ? chunk.getError() : "worker lost");
+            log.error("Batch {} failed: {}", chunk.getBatchId(), error);
+            leadBatchStore.failBatch(chunk.getBatchId(), error);
+            leadStreamService.batchUpdated(chunk.getBatchId());
+            return;
+        }
+
+        long heartbeatMillis = queueProperties.getHeartbeatInterval().toMillis();
+        ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(() -> renewLease(chunk, owner),
+                heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        try {
+            long start = System.nanoTime();
+            Optional<Duration> retryDelay = greylistRetryScheduler.nextRetry(chunk.getRetries());
+            List<Lead> leads = leadService.generateLeads(chunk.getBatchId(), chunk.getWeight(), chunk.getRows(),
+                    retryDelay.isPresent());
+
+            if (!running) {
+                handBack(chunk, owner);
+                return;
+            }
+            int inserted = leadBatchStore.completeChunk(chunk, owner, leads, retryDelay.orElse(Duration.ZERO));
+            leadStreamService.batchUpdated(chunk.getBatchId());
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            long deferred = leads.stream().filter(lead -> lead.getStatus() == LeadStatus.VERIFICATION_PENDING).count();
+
+            log.info("Stored {} leads of batch {} chunk {}{} in {} ms ({} rows/s), {} skipped as duplicates",
+                    inserted, chunk.getBatchId(), chunk.getChunkNo(),
+                    chunk.getRetries() > 0 ? " (retry " + chunk.getRetries() + ")" : "", millis,
+                    leads.size() * 1000L / millis, leads.size() - deferred - inserted);
+            if (deferred > 0) {
+                log.info("Deferred {} leads of batch {} chunk {} after temporary failures, retry {} in {}", deferred,
+                        chunk.getBatchId(), chunk.getChunkNo(), chunk.getRetries() + 1, retryDelay.orElseThrow());
+            }
+        } catch (RuntimeException e) {
+            if (!running) {
+                handBack(chunk, owner);
+                return;
+            }
+            log.error("Chunk {} of batch {} failed: {}", chunk.getChunkNo(), chunk.getBatchId(), e.getMessage(), e);
+            leadBatchStore.release(chunk, owner, e.getMessage());
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private void renewLease(LeadBatchChunk chunk, String owner) {
+        try {
+            if (!leadBatchStore.renewLease(chunk, owner, queueProperties.getLeaseDuration())) {
+                log.warn("Lost the lease of chunk {} of batch {}", chunk.getChunkNo(), chunk.getBatchId());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not renew the lease of chunk {} of batch {}: {}", chunk.getChunkNo(), chunk.getBatchId(), e.getMessage());
+        }
+    }
+
+    private void failAbandonedIntakes() {
+        try {
+            for (UUID batchId : leadBatchStore.findAbandonedIntakes(queueProperties.getIntakeTimeout())) {
+                log.error("Batch {} failed: its upload was not queued to the end within {}", batchId,
+                        queueProperties.getIntakeTimeout());
+                leadBatchStore.failBatch(batchId, "Upload was not queued to the end within " + queueProperties.getIntakeTimeout());
+                leadStreamService.batchUpdated(batchId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not fail abandoned uploads: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Hands the chunk back on shutdown. The interrupt that stopped the worker is cleared first: an interrupted
+     * virtual thread cannot use its database connection.
+     */
+    private void handBack(LeadBatchChunk chunk, String owner) {
+        Thread.interrupted();
+        try {
+            leadBatchStore.handBack(chunk, owner);
+            log.info("Handed chunk {} of batch {} back to the queue", chunk.getChunkNo(), chunk.getBatchId());
+        } catch (RuntimeException e) {
+            log.warn("Could not hand back chunk {} of batch {}; it is claimed again once its lease expires: {}",
+                    chunk.getChunkNo(), chunk.getBatchId(), e.getMessage());
+        }
+        Thread.currentThread().interrupt();
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.orvo.emailgenerator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVWriter;
+import com.orvo.emailgenerator.model.ExportFormat;
+import com.orvo.emailgenerator.model.LeadStatus;
+import com.orvo.emailgenerator.model.dto.response.LeadPageResponse;
+import com.orvo.emailgenerator.model.dto.response.LeadResponseDto;
+import com.orvo.emailgenerator.model.entity.Lead;
+import com.orvo.emailgenerator.repository.LeadRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads the stored leads of a batch back: page by page for the API, or as one streamed export.
+ * Both walk the {@code (batch_id, id)} index in id order, so no page or export ever scans skipped rows.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LeadResultService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final String EXPORT_SQL = """
+            select first_name, last_name, company_name, company_domain, generated_email, status
+            from leads
+            where batch_id = ?
+            order by id
+            """;
+    private static final String[] CSV_HEADER =
+            {"first_name", "last_name", "company_name", "company_domain", "generated_email", "status"};
+
+    private final LeadRepository leadRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Returns the batch's leads stored after the given id.
+     *
+     * @param batchId the batch to read
+     * @param afterId the {@code nextAfterId} of the previous page, or 0 for the first page
+     * @param limit   the page size, at most {@value #MAX_PAGE_SIZE}
+     * @return the page and the cursor of the next one
+     */
+    public LeadPageResponse getLeads(UUID batchId, long afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        // One extra row tells whether another page follows.
+        List<Lead> leads = leadRepository.findByBatchIdAndIdGreaterThanOrderByIdAsc(batchId, afterId, Limit.of(limit + 1));
+        boolean hasMore = leads.size() > limit;
+        List<Lead> page = hasMore ? leads.subList(0, limit) : leads;
+
+        return LeadPageResponse.builder()
+                .leads(page.stream().map(this::toDto).toList())
+                .nextAfterId(hasMore ? page.getLast().getId() : null)
+                .build();
+    }
+
+    /**
+     * Writes all leads of the batch to the stream. Rows are read through a database cursor and written as they
+     * arrive, so memory use does not depend on the batch size.
+     *
+     * @param batchId the batch to export
+     * @param format  CSV with a header row, or one JSON object per line
+     * @param out     the response body; flushed but not closed
+     */
+    @Transactional(readOnly = true)
+    public void export(UUID batchId, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        CSVWriter csvWriter = format == ExportFormat.CSV ? new CSVWriter(writer) : null;
+        int[] count = {0};
+
+        if (csvWriter != null) {
+            csvWriter.writeNext(CSV_HEADER, false);
+        }
+
+        try {
+            // The PostgreSQL driver only honours the fetch size inside a transaction, hence @Transactional.
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL);
+                statement.setFetchSize(EXPORT_FETCH_SIZE);
+                statement.setObject(1, batchId);
+                return statement;
+            }, (ResultSet rs) -> {
+                LeadResponseDto lead = toDto(rs);
+                try {
+                    if (csvWriter != null) {
+                        csvWriter.writeNext(new String[]{lead.getFirstName(), lead.getLastName(), lead.getCompanyName(),
+                                lead.getCompanyDomain(), lead.getGeneratedEmail(), lead.getStatus()}, false);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(lead));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        log.info("Exported {} leads of batch {} as {}", count[0], batchId, format);
+    }
+
+    private LeadResponseDto toDto(Lead lead) {
+        return LeadResponseDto.builder()
+                .id(lead.getId())
+                .firstName(lead.getFirstName())
+                .lastName(lead.getLastName())
+                .companyName(lead.getCompanyName())
+                .companyDomain(lead.getCompanyDomain())
+                .generatedEmail(lead.getGeneratedEmail())
+                .status(lead.getStatus().getDescription())
+                .build();
+    }
+
+    private LeadResponseDto toDto(ResultSet rs) throws SQLException {
+        return LeadResponseDto.builder()
+                .firstName(rs.getString("first_name"))
+                .lastName(rs.getString("last_name"))
+                .companyName(rs.getString("company_name"))
+                .companyDomain(rs.getString("company_domain"))
+                .generatedEmail(rs.getString("generated_email"))
+                .status(LeadStatus.valueOf(rs.getString("status")).getDescription())
+                .build();
+    }
+
+}
@@ -2,190 +2,620 @@ package com.orvo.emailgenerator.service;
 
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvException;
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import com.orvo.emailgenerator.config.property.DnsProperties;
 import com.orvo.emailgenerator.model.*;
-import com.orvo.emailgenerator.model.dto.response.LeadGenerationResponse;
 import com.orvo.emailgenerator.model.dto.response.LeadResponseDto;
 import com.orvo.emailgenerator.model.entity.Lead;
-import com.orvo.emailgenerator.repository.LeadRepository;
+import com.orvo.emailgenerator.service.DomainPatternStats.PatternRanking;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LeadService {
 
-    private static final List<Function<EmailComponents, String>> EMAIL_PATTERNS = Arrays.asList(
-            // Pattern: {first}.{last}@domain.com
-            comp -> comp.getFirstName().toLowerCase() + "." + comp.getLastName().toLowerCase() + "@" + comp.getCompanyDomain(),
-            // Pattern: {first}{last}@domain.com
-            comp -> comp.getFirstName().toLowerCase() + comp.getLastName().toLowerCase() + "@" + comp.getCompanyDomain(),
-            // Pattern: {firstInitial}{last}@domain.com
-            comp -> comp.getFirstName().substring(0, 1).toLowerCase() + comp.getLastName().toLowerCase() + "@" + comp.getCompanyDomain(),
-            // Pattern: {first}@domain.com
-            comp -> comp.getFirstName().toLowerCase() + "@" + comp.getCompanyDomain(),
-            // Pattern: {first}.{lastInitial}@domain.com
-            comp -> comp.getFirstName().toLowerCase() + "." + comp.getLastName().substring(0, 1).toLowerCase() + "@" + comp.getCompanyDomain()
-    );
-
-    private final LeadRepository leadRepository;
     private final DnsLookupService dnsLookupService;
     private final SmtpEmailVerifier smtpEmailVerifier;
+    private final BatchProperties batchProperties;
+    private final DnsProperties dnsProperties;
+    private final VerificationScheduler verificationScheduler;
+    private final VerificationResultStore verificationResultStore;
+    private final DomainPatternStats domainPatternStats;
+    private final EmailPatterns emailPatterns;
+    private final CompanyDomainIndex companyDomainIndex;
+    private final MeterRegistry meterRegistry;
 
-    public LeadGenerationResponse generateLeads(MultipartFile file) {
-        List<LeadResponseDto> leads = new ArrayList<>();
+    /**
+     * Checks that the uploaded CSV starts with the expected header.
+     *
+     * @param csvFile the spooled upload
+     * @throws IllegalArgumentException if the header is missing or wrong
+     */
+    public void validateHeader(Path csvFile) {
+        try (Reader reader = Files.newBufferedReader(csvFile)) {
+            readHeader(new CSVReader(reader));
+        } catch (IOException | CsvException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Splits one uploaded CSV into chunks of {@code orvo.batch.chunk-size} non-blank rows. Rows are streamed from
+     * the file, so only one chunk is held in memory at a time regardless of the file size. Each row is mapped once,
+     * here: a missing company domain is looked up by the company name, and the chunk carries the domain found, so
+     * the workers verifying it do not repeat the lookup. With {@code orvo.dns.prefetch.enabled}, the new company
+     * domains of every chunk are resolved in the background as soon as the chunk is read, so the chunks processed
+     * on this instance find their mail servers in the DNS cache instead of waiting for them one domain at a time.
+     *
+     * @param batchId       the batch the rows belong to
+     * @param csvFile       the spooled upload, header included
+     * @param chunkConsumer receives the cells of every chunk's rows, in file order, company domains filled in
+     * @return the number of rows read
+     */
+    public int readChunks(UUID batchId, Path csvFile, Consumer<List<String[]>> chunkConsumer) {
+        int chunkSize = batchProperties.getChunkSize();
+        DnsLookupService.Prefetch prefetch = dnsProperties.getPrefetch().isEnabled()
+                ? dnsLookupService.startPrefetch()
+                : null;
+        long start = System.nanoTime();
+        List<LeadRow> chunk = new ArrayList<>(chunkSize);
+        int totalRows = 0;
 
-        try (Reader reader = new InputStreamReader(file.getInputStream())) {
+        try (Reader reader = Files.newBufferedReader(csvFile)) {
             CSVReader csvReader = new CSVReader(reader);
-            List<String[]> rows = csvReader.readAll();
+            readHeader(csvReader);
+
+            // Read data rows chunk by chunk; orvo.csv.parse times the reading of each chunk.
+            Timer parseTimer = meterRegistry.timer("orvo.csv.parse");
+            long parseStart = System.nanoTime();
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                if (isBlank(row)) {
+                    continue;
+                }
+                chunk.add(resolveCompanyDomain(toLeadRow(row)));
 
-            // Validate headers
-            if (rows.isEmpty() || !isValidHeader(rows.getFirst())) {
-                throw new IllegalArgumentException("Invalid CSV headers. Expected: first_name, last_name, company_name, company_domain");
+                if (chunk.size() == chunkSize) {
+                    parseTimer.record(System.nanoTime() - parseStart, TimeUnit.NANOSECONDS);
+                    acceptChunk(chunk, prefetch, chunkConsumer);
+                    totalRows += chunk.size();
+                    chunk.clear();
+                    parseStart = System.nanoTime();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                parseTimer.record(System.nanoTime() - parseStart, TimeUnit.NANOSECONDS);
+                acceptChunk(chunk, prefetch, chunkConsumer);
+                totalRows += chunk.size();
+            }
+        } catch (IOException | CsvException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (prefetch != null) {
+                prefetch.finish().whenComplete((result, e) -> log.info("Batch {}: resolved {} domains in {} ms",
+                        batchId, prefetch.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
             }
+        }
+        return totalRows;
+    }
 
-            // Process each data row
-            for (int i = 1; i < rows.size(); i++) {
-                String[] row = rows.get(i);
-                String firstName = row[0];
-                String lastName = row[1];
-                String companyName = row[2];
-                String companyDomain = (row.length > 3 && !row[3].isEmpty()) ? row[3] : deriveDomainFromCompany(companyName);
+    /**
+     * Starts resolving the chunk's company domains, if prefetching, then hands the chunk on.
+     */
+    private void acceptChunk(List<LeadRow> chunk, DnsLookupService.Prefetch prefetch,
+                             Consumer<List<String[]>> chunkConsumer) {
+        if (prefetch != null) {
+            prefetch.add(chunk.stream().map(LeadRow::getCompanyDomain).toList());
+        }
+        chunkConsumer.accept(chunk.stream().map(this::toCells).toList());
+    }
 
-                LeadResponseDto dto = generateLead(firstName, lastName, companyName, companyDomain);
-                leads.add(dto);
-            }
+    /**
+     * Generates and verifies the leads of one chunk of CSV rows.
+     *
+     * @param batchId    the batch the leads belong to
+     * @param weight     the batch's share of the verification capacity, see {@link VerificationScheduler}
+     * @param rows       the cells of the chunk's rows, as passed on by {@link #readChunks(UUID, Path, Consumer)}
+     * @param deferrable whether leads answered only with temporary failures are left
+     *                   {@link LeadStatus#VERIFICATION_PENDING} for a later retry, rather than given up on as
+     *                   {@link LeadStatus#PROCESSING_ERROR}
+     * @return one lead per row, in the order of {@code rows}, ready to be stored unless pending
+     */
+    public List<Lead> generateLeads(UUID batchId, int weight, List<String[]> rows, boolean deferrable) {
+        List<LeadResponseDto> leads = generateLeadsByDomain(batchId, weight, rows.stream().map(this::toLeadRow).toList(),
+                deferrable);
+        List<Lead> entities = new ArrayList<>(leads.size());
 
-            UUID batchId = save(leads);
+        for (LeadResponseDto lead : leads) {
+            LeadStatus status = LeadStatus.getLeadStatus(lead.getStatus());
+            if (status != LeadStatus.VERIFICATION_PENDING) {
+                meterRegistry.counter("orvo.leads", "status", status.name()).increment();
+            }
 
-            // Calculate response metrics
-            int totalLeads = leads.size();
-            int validEmails = (int) leads.stream()
-                    .filter(lead -> lead.getStatus().equals(LeadStatus.EMAIL_CREATED.getDescription()))
-                    .count();
-            return LeadGenerationResponse.builder()
+            entities.add(Lead.builder()
                     .batchId(batchId)
-                    .totalLeads(totalLeads)
-                    .validEmails(validEmails)
-                    .build();
-        } catch (IOException | CsvException e) {
-            throw new RuntimeException(e);
+                    .firstName(lead.getFirstName())
+                    .lastName(lead.getLastName())
+                    .companyName(lead.getCompanyName())
+                    .companyDomain(lead.getCompanyDomain())
+                    .generatedEmail(lead.getGeneratedEmail())
+                    .status(status)
+                    .build());
         }
+        return entities;
     }
 
-    private UUID save(List<LeadResponseDto> leads) {
-        UUID batchId = UUID.randomUUID();
+    /**
+     * Generates the leads of a chunk grouped by company domain: every domain group resolves its mail server once
+     * and probes the candidates of all its leads over one SMTP session. Groups are verified concurrently, sharing
+     * the verification executor fairly with the other batches, and the results are returned in input order.
+     *
+     * @param batchId    the batch the rows belong to
+     * @param weight     the batch's weight
+     * @param rows       the rows of the chunk
+     * @param deferrable whether unresolved leads are left pending
+     * @return one lead per row, in the order of {@code rows}
+     */
+    private List<LeadResponseDto> generateLeadsByDomain(UUID batchId, int weight, List<LeadRow> rows,
+                                                        boolean deferrable) {
+        LeadResponseDto[] leads = new LeadResponseDto[rows.size()];
+        Map<String, List<Integer>> rowsByDomain = new LinkedHashMap<>();
 
-        List<Lead> entities = leads.stream()
-                .map(dto -> Lead.builder()
-                        .batchId(batchId)
-                        .firstName(dto.getFirstName())
-                        .lastName(dto.getLastName())
-                        .companyName(dto.getCompanyName())
-                        .companyDomain(dto.getCompanyDomain())
-                        .generatedEmail(dto.getGeneratedEmail())
-                        .status(LeadStatus.getLeadStatus(dto.getStatus()))
-                        .build())
-                .toList();
+        for (int i = 0; i < rows.size(); i++) {
+            LeadRow row = rows.get(i);
+
+            if (row.getFirstName().isBlank() || row.getLastName().isBlank()) {
+                leads[i] = toLead(row, null, LeadStatus.INCOMPLETE_LEAD_DATA);
+            } else if (row.getCompanyDomain().isBlank()) {
+                leads[i] = toLead(row, null, LeadStatus.INSUFFICIENT_COMPANY_INFO);
+            } else {
+                rowsByDomain.computeIfAbsent(row.getCompanyDomain(), domain -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<String, CompletableFuture<List<LeadResponseDto>>> pending = new LinkedHashMap<>();
+        rowsByDomain.forEach((domain, indexes) -> {
+            List<LeadRow> group = indexes.stream().map(rows::get).toList();
+            pending.put(domain, generateLeadsForDomain(batchId, weight, domain, group, deferrable));
+        });
+
+        pending.forEach((domain, future) -> {
+            List<Integer> indexes = rowsByDomain.get(domain);
+            List<LeadResponseDto> groupLeads = awaitGroup(domain, future);
+
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                leads[index] = groupLeads != null ? groupLeads.get(i) : toLead(rows.get(index), null, LeadStatus.PROCESSING_ERROR);
+            }
+        });
+        return Arrays.asList(leads);
+    }
 
-        leadRepository.saveAll(entities);
-        return batchId;
+    private List<LeadResponseDto> awaitGroup(String domain, Future<List<LeadResponseDto>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying leads for " + domain, e);
+        } catch (ExecutionException e) {
+            log.error("Verification failed for domain {}: {}", domain, e.getCause().getMessage(), e.getCause());
+            return null;
+        }
     }
 
     /**
-     * A stub for deriving the domain from a company name.
-     * In a real implementation, this might query a public API or use a lookup table.
+     * Verifies the leads of one domain group through the {@link VerificationScheduler}. Leads whose candidates
+     * were only answered with temporary failures (greylisting), or not at all because none of the domain's mail
+     * servers could be reached, are left {@link LeadStatus#VERIFICATION_PENDING},
+     * to be retried later as a chunk of their own (see {@link GreylistRetryScheduler}); on the last retry they end
+     * up as {@link LeadStatus#PROCESSING_ERROR}.
+     *
+     * @param batchId    the batch the group belongs to
+     * @param weight     the batch's weight
+     * @param domain     the company domain shared by the group
+     * @param rows       the rows of the group
+     * @param deferrable whether unresolved leads are left pending
+     * @return one lead per row, in the order of {@code rows}
      */
-    private String deriveDomainFromCompany(String companyName) {
-        // For now, simply return a dummy domain or try a basic conversion.
-        // E.g., remove spaces and append ".com"
-        // TODO: Implement a more robust domain derivation logic.
-        return companyName.toLowerCase().replaceAll("\\s+", "") + ".com";
+    private CompletableFuture<List<LeadResponseDto>> generateLeadsForDomain(UUID batchId, int weight, String domain,
+                                                                           List<LeadRow> rows, boolean deferrable) {
+        DomainVerification verification = new DomainVerification(domain, rows);
+        LeadStatus unresolved = deferrable ? LeadStatus.VERIFICATION_PENDING : LeadStatus.PROCESSING_ERROR;
+
+        return verificationScheduler.submit(batchId, weight, rows.size(), () -> verifyPending(verification))
+                .thenApply(done -> {
+                    if (!deferrable && done.hasPending()) {
+                        log.warn("Giving up on {} leads of {} still answered with temporary failures",
+                                done.getPending().size(), domain);
+                    }
+                    return done.finish(row -> toLead(row, null, unresolved));
+                });
+    }
+
+    /**
+     * Resolves the leads whose outcome already follows from stored verdicts, then resolves the mail server of
+     * the domain once and probes the candidates of every remaining lead of the group over a single SMTP session.
+     * If no mail server of the domain can be used, the remaining leads stay pending.
+     */
+    private DomainVerification verifyPending(DomainVerification verification) {
+        String domain = verification.getDomain();
+        PatternRanking ranking = domainPatternStats.rank(domain, emailPatterns.getTemplates());
+        Map<Integer, List<EmailCandidate>> candidates = new HashMap<>();
+        for (int index : verification.getPending()) {
+            candidates.put(index, toCandidates(toEmailComponents(verification.getRows().get(index)), ranking));
+        }
+        Map<String, EmailVerdict> known = verificationResultStore.findVerdicts(
+                candidates.values().stream().flatMap(List::stream).map(EmailCandidate::getEmail).toList());
+
+        List<Integer> unknown = new ArrayList<>();
+        for (int index : verification.getPending()) {
+            EmailSearch search = findKnownEmail(candidates.get(index), known);
+
+            if (search == null) {
+                unknown.add(index);
+            } else {
+                LeadStatus status = search.getEmail() != null ? LeadStatus.EMAIL_CREATED : LeadStatus.EMAIL_NOT_FOUND;
+                verification.resolve(index, toLead(verification.getRows().get(index), search.getEmail(), status));
+            }
+        }
+        verification.setPending(unknown);
+
+        if (unknown.isEmpty()) {
+            return verification;
+        }
+
+        List<String> mailServers = dnsLookupService.getMailServers(domain);
+
+        if (mailServers.isEmpty()) {
+            log.warn("No mail server found for domain: {}", domain);
+            return verification.resolveAll(row -> toLead(row, null, LeadStatus.INSUFFICIENT_COMPANY_INFO));
+        }
+        log.debug("Found mail servers: {} for domain: {} ({} leads)", mailServers, domain, verification.getPending().size());
+
+        if (smtpEmailVerifier.getCatchAllVerdict(domain).orElse(false)) {
+            return verification.resolveAll(this::toCatchAllLead);
+        }
+
+        try (SmtpSession session = smtpEmailVerifier.openSession(mailServers)) {
+            if (smtpEmailVerifier.isCatchAll(domain, session)) {
+                return verification.resolveAll(this::toCatchAllLead);
+            }
+
+            List<Integer> deferred = new ArrayList<>();
+            for (int index : verification.getPending()) {
+                LeadRow row = verification.getRows().get(index);
+                EmailSearch search = findEmail(candidates.get(index), ranking, known, session);
+
+                if (search.getEmail() != null) {
+                    verification.resolve(index, toLead(row, search.getEmail(), LeadStatus.EMAIL_CREATED));
+                } else if (search.isDeferred()) {
+                    deferred.add(index);
+                } else {
+                    verification.resolve(index, toLead(row, null, LeadStatus.EMAIL_NOT_FOUND));
+                }
+            }
+            verification.setPending(deferred);
+            return verification;
+        } catch (MessagingException e) {
+            log.warn("Could not open SMTP session with {} for domain {}: {}", mailServers, domain, e.getMessage());
+            return verification;
+        }
+    }
+
+    /**
+     * Marks a lead of an accept-all domain without probing it: the server's acceptance proves nothing, so
+     * the first pattern is kept as a best guess and the lead gets the {@link LeadStatus#CATCH_ALL_DOMAIN} status.
+     */
+    private LeadResponseDto toCatchAllLead(LeadRow row) {
+        List<EmailCandidate> candidates = emailPatterns.generate(toEmailComponents(row), List.copyOf(emailPatterns.getTemplates()));
+        return toLead(row, candidates.isEmpty() ? null : candidates.getFirst().getEmail(), LeadStatus.CATCH_ALL_DOMAIN);
+    }
+
+    private LeadRow toLeadRow(String[] row) {
+        return LeadRow.builder()
+                .firstName(cell(row, 0))
+                .lastName(cell(row, 1))
+                .companyName(cell(row, 2))
+                .companyDomain(cell(row, 3).toLowerCase())
+                .build();
+    }
+
+    private String[] toCells(LeadRow row) {
+        return new String[]{row.getFirstName(), row.getLastName(), row.getCompanyName(), row.getCompanyDomain()};
+    }
+
+    private LeadRow resolveCompanyDomain(LeadRow row) {
+        if (row.getCompanyDomain().isEmpty() && !row.getCompanyName().isEmpty()) {
+            // Without a known domain the lead is not probed: it ends up as INSUFFICIENT_COMPANY_INFO.
+            row.setCompanyDomain(companyDomainIndex.findDomain(row.getCompanyName()).orElse("").toLowerCase());
+        }
+        return row;
+    }
+
+    private String cell(String[] row, int index) {
+        return index < row.length ? row[index].trim() : "";
+    }
+
+    private boolean isBlank(String[] row) {
+        return Arrays.stream(row).allMatch(String::isBlank);
+    }
+
+    private void readHeader(CSVReader csvReader) throws IOException, CsvException {
+        String[] header = csvReader.readNext();
+        if (header == null || !isValidHeader(header)) {
+            throw new IllegalArgumentException("Invalid CSV headers. Expected: first_name, last_name, company_name, company_domain");
+        }
     }
 
     private boolean isValidHeader(String[] header) {
-        return header.length >= 3 &&
+        return header.length >= 4 &&
                 header[0].equalsIgnoreCase("first_name") &&
                 header[1].equalsIgnoreCase("last_name") &&
                 header[2].equalsIgnoreCase("company_name") &&
                 header[3].equalsIgnoreCase("company_domain");
     }
 
-    private LeadResponseDto generateLead(String firstName, String lastName, String companyName, String companyDomain) {
-        Optional<String> email = generateEmail(EmailComponents.builder()
-                .firstName(firstName)
-                .lastName(lastName)
-                .companyDomain(companyDomain)
-                .build());
+    private EmailComponents toEmailComponents(LeadRow row) {
+        return EmailComponents.builder()
+                .firstName(row.getFirstName())
+                .lastName(row.getLastName())
+                .companyDomain(row.getCompanyDomain())
+                .build();
+    }
 
+    private LeadResponseDto toLead(LeadRow row, String email, LeadStatus status) {
         return LeadResponseDto.builder()
-                .firstName(firstName)
-                .lastName(lastName)
-                .companyName(companyName)
-                .companyDomain(companyDomain)
-                .generatedEmail(email.orElse(null))
-                // TODO: Add logic to set status based on email verification
-                .status(LeadStatus.EMAIL_CREATED.getDescription())
+                .firstName(row.getFirstName())
+                .lastName(row.getLastName())
+                .companyName(row.getCompanyName())
+                .companyDomain(row.getCompanyDomain())
+                .generatedEmail(email)
+                .status(status.getDescription())
                 .build();
     }
 
+    /**
+     * Generates candidate addresses for the given components and returns the first one the domain's mail server
+     * accepts. The mail server is resolved once and all candidates are probed over a single SMTP session.
+     * Catch-all domains yield no email, since their acceptance of a candidate proves nothing.
+     *
+     * @param components the name and domain to build candidates from
+     * @return the first accepted candidate, if any
+     */
     public Optional<String> generateEmail(EmailComponents components) {
-        for (Function<EmailComponents, String> pattern : EMAIL_PATTERNS) {
-            String candidateEmail = pattern.apply(components);
+        String domain = components.getCompanyDomain();
+        PatternRanking ranking = domainPatternStats.rank(domain, emailPatterns.getTemplates());
+        List<EmailCandidate> candidates = toCandidates(components, ranking);
+        Map<String, EmailVerdict> known = verificationResultStore.findVerdicts(
+                candidates.stream().map(EmailCandidate::getEmail).toList());
+        EmailSearch knownSearch = findKnownEmail(candidates, known);
+
+        if (knownSearch != null) {
+            return Optional.ofNullable(knownSearch.getEmail());
+        }
 
-            if (isValid(candidateEmail)) {
-                return Optional.of(candidateEmail);
+        List<String> mailServers = dnsLookupService.getMailServers(domain);
+
+        if (mailServers.isEmpty()) {
+            log.warn("No mail server found for domain: {}", domain);
+            return Optional.empty();
+        }
+
+        if (smtpEmailVerifier.getCatchAllVerdict(domain).orElse(false)) {
+            return Optional.empty();
+        }
+
+        try (SmtpSession session = smtpEmailVerifier.openSession(mailServers)) {
+            if (smtpEmailVerifier.isCatchAll(domain, session)) {
+                return Optional.empty();
             }
+            return Optional.ofNullable(findEmail(candidates, ranking, known, session).getEmail());
+        } catch (MessagingException e) {
+            log.error("Could not open SMTP session with {} for domain {}: {}", mailServers, domain, e.getMessage());
+            return Optional.empty();
         }
-        return Optional.empty();
+    }
+
+    private List<EmailCandidate> toCandidates(EmailComponents components, PatternRanking ranking) {
+        return emailPatterns.generate(components, ranking.getPatterns());
+    }
+
+    /**
+     * Decides a lead from stored verdicts alone: the first candidate known to be accepted wins, as long as every
+     * candidate before it is known to be rejected.
+     *
+     * @return the outcome, or null if some candidate still has to be probed
+     */
+    private EmailSearch findKnownEmail(List<EmailCandidate> candidates, Map<String, EmailVerdict> known) {
+        for (EmailCandidate candidate : candidates) {
+            EmailVerdict verdict = known.get(VerificationResultStore.normalize(candidate.getEmail()));
+
+            if (verdict == null) {
+                return null;
+            }
+            if (verdict == EmailVerdict.ACCEPTED) {
+                return new EmailSearch(candidate.getEmail(), false);
+            }
+        }
+        return new EmailSearch(null, false);
+    }
+
+    /**
+     * Probes the candidates of one lead in ranked pattern order and stops at the first accepted one; candidates with
+     * a stored verdict are not probed again, and new definite replies are stored. The pattern of an accepted
+     * candidate counts as a hit for the domain.
+     * If none is accepted but some were answered with a retryable temporary failure, or not answered at all because
+     * every mail server of the domain stopped answering, the search is deferred rather than reported as a miss.
+     * A pipelining session is asked about all unknown candidates in one round trip, which is cheaper than
+     * stopping early, unless the domain's convention is confirmed and the first candidate is the likely hit.
+     */
+    private EmailSearch findEmail(List<EmailCandidate> candidates, PatternRanking ranking, Map<String, EmailVerdict> known,
+                                  SmtpSession session) {
+        List<String> unknown = candidates.stream()
+                .map(EmailCandidate::getEmail)
+                .filter(candidate -> !known.containsKey(VerificationResultStore.normalize(candidate)))
+                .distinct()
+                .toList();
+        Map<String, SmtpReply> replies = new LinkedHashMap<>();
+
+        if (session.isPipelining() && !ranking.isConfirmed()) {
+            List<SmtpReply> pipelined = verifyAll(unknown, session);
+            for (int i = 0; i < unknown.size(); i++) {
+                replies.put(unknown.get(i), pipelined.get(i));
+            }
+        }
+
+        EmailSearch search = null;
+        boolean deferred = false;
+
+        for (EmailCandidate candidate : candidates) {
+            EmailVerdict verdict = known.get(VerificationResultStore.normalize(candidate.getEmail()));
+
+            if (verdict == EmailVerdict.ACCEPTED) {
+                search = new EmailSearch(candidate.getEmail(), false);
+                break;
+            }
+            if (verdict != null) {
+                continue;
+            }
+
+            SmtpReply reply = replies.computeIfAbsent(candidate.getEmail(), email -> verify(email, session));
+            if (reply.isAccepted()) {
+                domainPatternStats.recordHit(ranking.getDomain(), candidate.getPattern());
+                search = new EmailSearch(candidate.getEmail(), false);
+                break;
+            }
+            deferred |= reply.getCode() == SmtpReply.NO_REPLY || reply.isRetryable();
+        }
+        verificationResultStore.record(replies, session.getHost());
+        return search != null ? search : new EmailSearch(null, deferred);
+    }
+
+    /**
+     * Validates and probes several addresses together, see {@link #verify(String, SmtpSession)}.
+     */
+    private List<SmtpReply> verifyAll(List<String> emails, SmtpSession session) {
+        List<String> wellFormed = emails.stream().filter(email -> email != null && email.contains("@")).toList();
+        log.debug("Verifying {} emails on {}", wellFormed.size(), session.getHost());
+
+        Iterator<SmtpReply> replies = session.verifyAll(wellFormed).iterator();
+        List<SmtpReply> result = new ArrayList<>(emails.size());
+
+        for (String email : emails) {
+            if (email == null || !email.contains("@")) {
+                log.warn("Invalid email format: {}", email);
+                result.add(SmtpReply.noReply("Invalid email format"));
+                continue;
+            }
+            SmtpReply reply = replies.next();
+            if (reply.isAccepted()) {
+                log.debug("SMTP verification succeeded for {}", email);
+            } else {
+                log.debug("SMTP verification failed for {}: {}", email, reply);
+            }
+            result.add(reply);
+        }
+        return result;
     }
 
     /**
      * Validates an email address by:
      *   1. Checking basic format.
-     *   2. Looking up the domain's mail server (MX, with fallback to A record).
-     *   3. Performing an SMTP handshake to see if the server accepts the email.
+     *   2. Asking the domain's mail server, through an open SMTP session, whether it accepts the recipient.
      *
-     * @param email the email address to validate
-     * @return true if valid; false otherwise
+     * @param email   the email address to validate
+     * @param session an open session with the mail server of the email's domain
+     * @return the server's reply to the probe
      */
-    private boolean isValid(String email) {
+    private SmtpReply verify(String email, SmtpSession session) {
         if (email == null || !email.contains("@")) {
             log.warn("Invalid email format: {}", email);
-            return false;
+            return SmtpReply.noReply("Invalid email format");
+        }
+        log.debug("Verifying email {} on {}", email, session.getHost());
+
+        SmtpReply reply = session.verify(email);
+
+        if (reply.isAccepted()) {
+            log.debug("SMTP verification succeeded for {}", email);
+        } else {
+            log.debug("SMTP verification failed for {}: {}", email, reply);
         }
+        return reply;
+    }
+
+    /**
+     * Outcome of probing the candidates of one lead: the accepted email, if any, and whether the search should be
+     * retried because some candidates were only answered with temporary failures or not answered at all.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class EmailSearch {
 
-        // Extract domain from email.
-        String domain = email.substring(email.indexOf("@") + 1);
-        log.info("Verifying email {} for domain {}", email, domain);
+        private final String email;
+        private final boolean deferred;
 
-        // Use DnsLookupService to get the mail server.
-        Optional<String> recipientMailServerOpt = dnsLookupService.getMailServer(domain);
+    }
 
-        if (recipientMailServerOpt.isEmpty()) {
-            log.warn("No mail server found for domain: {}", domain);
-            return false;
+    /**
+     * Verification state of one domain group: the resolved leads so far and the indexes of the rows still pending.
+     */
+    @Getter
+    private static class DomainVerification {
+
+        private final String domain;
+        private final List<LeadRow> rows;
+        private final LeadResponseDto[] leads;
+        @Setter
+        private List<Integer> pending;
+
+        DomainVerification(String domain, List<LeadRow> rows) {
+            this.domain = domain;
+            this.rows = rows;
+            this.leads = new LeadResponseDto[rows.size()];
+            this.pending = IntStream.range(0, rows.size()).boxed().toList();
         }
 
-        String recipientMailServer = recipientMailServerOpt.get();
-        log.info("Found mail server: {} for domain: {}", recipientMailServer, domain);
+        void resolve(int index, LeadResponseDto lead) {
+            leads[index] = lead;
+        }
 
-        boolean smtpValid = smtpEmailVerifier.verifyEmail(recipientMailServer, email);
+        DomainVerification resolveAll(Function<LeadRow, LeadResponseDto> toLead) {
+            pending.forEach(index -> leads[index] = toLead.apply(rows.get(index)));
+            pending = List.of();
+            return this;
+        }
 
-        if (smtpValid) {
-            log.info("SMTP verification SUCCEEDED for {}\n", email.toUpperCase());
-        } else {
-            log.warn("SMTP verification FAILED for {}\n", email.toUpperCase());
+        boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        List<LeadResponseDto> finish(Function<LeadRow, LeadResponseDto> toUnresolvedLead) {
+            resolveAll(toUnresolvedLead);
+            return Arrays.asList(leads);
         }
-        return smtpValid;
+
     }
 
 }
@@ -0,0 +1,154 @@
+package com.orvo.emailgenerator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orvo.emailgenerator.config.property.LeadStreamProperties;
+import com.orvo.emailgenerator.model.BatchState;
+import com.orvo.emailgenerator.model.StreamFormat;
+import com.orvo.emailgenerator.model.dto.response.LeadPageResponse;
+import com.orvo.emailgenerator.model.dto.response.LeadResponseDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the leads of a batch while it is processed, as Server-Sent Events or NDJSON. Leads are streamed in id
+ * order as soon as they are stored, chunk by chunk, whichever instance stored them; the stream ends once the batch
+ * is finished and all of its leads are sent. Every lead carries its id, from which a client resumes a stream that
+ * was cut off.
+ * <p>
+ * Streams pull from the database: the next page is read only once the previous one is written, so a slow client
+ * holds back its own stream through the socket instead of making the server buffer. Chunks stored by this instance
+ * wake their streams at once; chunks stored by other instances are found by polling.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LeadStreamService {
+
+    private final Map<UUID, Set<Semaphore>> subscribers = new ConcurrentHashMap<>();
+
+    private final LeadResultService leadResultService;
+    private final LeadBatchStore leadBatchStore;
+    private final LeadStreamProperties leadStreamProperties;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Wakes the streams of a batch whose leads or state this instance has just changed.
+     */
+    public void batchUpdated(UUID batchId) {
+        Set<Semaphore> signals = subscribers.get(batchId);
+        if (signals != null) {
+            signals.forEach(Semaphore::release);
+        }
+    }
+
+    /**
+     * Writes the batch's leads stored after the given id to the stream, then every lead stored later, until the
+     * batch is finished or {@code orvo.lead-stream.max-duration} has passed.
+     *
+     * @param batchId the batch to stream
+     * @param afterId the id of the last lead the client received, or 0 to start from the first lead
+     * @param format  Server-Sent Events, ending with an {@code end} event that carries the batch state, or one
+     *                JSON object per line
+     * @param out     the response body; flushed but not closed
+     */
+    public void stream(UUID batchId, long afterId, StreamFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Semaphore signal = subscribe(batchId);
+        long deadline = System.nanoTime() + leadStreamProperties.getMaxDuration().toNanos();
+        long heartbeatNanos = leadStreamProperties.getHeartbeatInterval().toNanos();
+        long lastWrite = System.nanoTime();
+        long cursor = afterId;
+        int count = 0;
+
+        try {
+            while (true) {
+                // A finished state read before the page guarantees the page sees the batch's last leads.
+                Optional<BatchState> state = leadBatchStore.findState(batchId);
+                LeadPageResponse page = leadResultService.getLeads(batchId, cursor, leadStreamProperties.getPageSize());
+
+                for (LeadResponseDto lead : page.getLeads()) {
+                    writeLead(writer, format, lead);
+                    cursor = lead.getId();
+                    count++;
+                }
+                if (!page.getLeads().isEmpty()) {
+                    writer.flush();
+                    lastWrite = System.nanoTime();
+                }
+                if (page.getNextAfterId() != null) {
+                    continue;
+                }
+
+                if (state.isEmpty() || state.get() == BatchState.COMPLETED || state.get() == BatchState.FAILED) {
+                    if (format == StreamFormat.SSE) {
+                        writer.write("event: end\ndata: " + objectMapper.writeValueAsString(
+                                Map.of("state", state.map(BatchState::name).orElse("UNKNOWN"))) + "\n\n");
+                        writer.flush();
+                    }
+                    break;
+                }
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+
+                if (!signal.tryAcquire(leadStreamProperties.getPollInterval().toNanos(), TimeUnit.NANOSECONDS)) {
+                    if (format == StreamFormat.SSE && System.nanoTime() - lastWrite > heartbeatNanos) {
+                        writer.write(": keep-alive\n\n");
+                        writer.flush();
+                        lastWrite = System.nanoTime();
+                    }
+                }
+                signal.drainPermits();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            unsubscribe(batchId, signal);
+        }
+        log.info("Streamed {} leads of batch {} as {}", count, batchId, format);
+    }
+
+    private void writeLead(Writer writer, StreamFormat format, LeadResponseDto lead) throws IOException {
+        String json = objectMapper.writeValueAsString(lead);
+
+        if (format == StreamFormat.SSE) {
+            writer.write("id: " + lead.getId() + "\nevent: lead\ndata: " + json + "\n\n");
+        } else {
+            writer.write(json);
+            writer.write('\n');
+        }
+    }
+
+    private Semaphore subscribe(UUID batchId) {
+        Semaphore signal = new Semaphore(0);
+        subscribers.compute(batchId, (id, signals) -> {
+            Set<Semaphore> batchSignals = signals != null ? signals : ConcurrentHashMap.newKeySet();
+            batchSignals.add(signal);
+            return batchSignals;
+        });
+        return signal;
+    }
+
+    private void unsubscribe(UUID batchId, Semaphore signal) {
+        subscribers.computeIfPresent(batchId, (id, signals) -> {
+            signals.remove(signal);
+            return signals.isEmpty() ? null : signals;
+        });
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.orvo.emailgenerator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Per-host circuit breakers for mail servers. After {@code orvo.email.circuit-breaker.failure-threshold}
+ * consecutive connection failures or timeouts a host is skipped for {@code open-duration}; afterwards a single
+ * trial connection is let through, and its outcome closes or re-opens the circuit.
+ */
+@Slf4j
+@Service
+public class MailHostCircuitBreaker {
+
+    private final EmailProperties.CircuitBreaker circuitBreaker;
+    private final Cache<String, HostCircuit> circuits;
+
+    public MailHostCircuitBreaker(EmailProperties emailProperties) {
+        this.circuitBreaker = emailProperties.getCircuitBreaker();
+        this.circuits = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    /**
+     * @param host the mail server host
+     * @return true if a connection to the host may be attempted now
+     */
+    public boolean allowRequest(String host) {
+        HostCircuit circuit = circuits.getIfPresent(key(host));
+        return circuit == null || circuit.allowRequest();
+    }
+
+    public void recordSuccess(String host) {
+        HostCircuit circuit = circuits.getIfPresent(key(host));
+
+        if (circuit != null) {
+            circuit.recordSuccess();
+        }
+    }
+
+    public void recordFailure(String host) {
+        HostCircuit circuit = circuits.get(key(host), key -> new HostCircuit());
+
+        if (circuit.recordFailure(circuitBreaker.getFailureThreshold(), circuitBreaker.getOpenDuration())) {
+            log.warn("Circuit opened for mail host {} for {}", host, circuitBreaker.getOpenDuration());
+        }
+    }
+
+    private String key(String host) {
+        return host.toLowerCase();
+    }
+
+    private static class HostCircuit {
+
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInProgress;
+
+        synchronized boolean allowRequest() {
+            if (openUntil == 0) {
+                return true;
+            }
+            if (System.nanoTime() < openUntil || trialInProgress) {
+                return false;
+            }
+            // Half-open: let a single trial through.
+            trialInProgress = true;
+            return true;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            openUntil = 0;
+            trialInProgress = false;
+        }
+
+        /**
+         * @return true if this failure opened the circuit
+         */
+        synchronized boolean recordFailure(int threshold, Duration openDuration) {
+            consecutiveFailures++;
+
+            if (trialInProgress || (openUntil == 0 && consecutiveFailures >= threshold)) {
+                openUntil = System.nanoTime() + openDuration.toNanos();
+                trialInProgress = false;
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
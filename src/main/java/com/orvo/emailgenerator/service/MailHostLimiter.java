@@ -0,0 +1,163 @@
+package com.orvo.emailgenerator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.repository.MailHostRateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits how hard a single mail host is hit: at most {@code orvo.email.host-limits.max-concurrent-sessions}
+ * open sessions per host, and SMTP commands paced by a per-host token bucket of
+ * {@code commands-per-second} with bursts of up to {@code burst} commands. With {@code distributed}, the token
+ * buckets are kept in the database by {@link MailHostRateRepository} and shared by all instances, so adding
+ * instances does not multiply the rate a host sees; should the database fail, commands fall back to the
+ * instance's own bucket.
+ * <p>
+ * Waiting callers block; they are expected to run on virtual threads.
+ */
+@Slf4j
+@Service
+public class MailHostLimiter {
+
+    private final EmailProperties.HostLimits hostLimits;
+    private final MailHostRateRepository mailHostRateRepository;
+    private final Cache<String, HostLimits> hosts;
+
+    public MailHostLimiter(EmailProperties emailProperties, MailHostRateRepository mailHostRateRepository) {
+        this.hostLimits = emailProperties.getHostLimits();
+        this.mailHostRateRepository = mailHostRateRepository;
+        this.hosts = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    /**
+     * Waits for a free session slot on the given host.
+     *
+     * @param host the mail server host
+     * @return the permit, to be closed when the session ends
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public HostPermit acquire(String host) throws InterruptedException {
+        HostLimits limits = hosts.get(host.toLowerCase(), this::newHostLimits);
+        limits.sessions().acquire();
+        return new HostPermit(limits);
+    }
+
+    /**
+     * A session slot on one host. Commands sent during the session are paced through {@link #awaitRate()}.
+     */
+    public static class HostPermit implements AutoCloseable {
+
+        private final HostLimits limits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private HostPermit(HostLimits limits) {
+            this.limits = limits;
+        }
+
+        /**
+         * Blocks until the host's rate limit allows one more command.
+         *
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public void awaitRate() throws InterruptedException {
+            long waitNanos = limits.commands().reserve();
+
+            if (waitNanos > 0) {
+                Thread.sleep(Duration.ofNanos(waitNanos));
+            }
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                limits.sessions().release();
+            }
+        }
+
+    }
+
+    private HostLimits newHostLimits(String host) {
+        TokenBucket localCommands = new TokenBucket(hostLimits.getCommandsPerSecond(), hostLimits.getBurst());
+        RateLimit commands = hostLimits.isDistributed() ? new SharedTokenBucket(host, localCommands) : localCommands;
+        return new HostLimits(new Semaphore(hostLimits.getMaxConcurrentSessions(), true), commands);
+    }
+
+    private record HostLimits(Semaphore sessions, RateLimit commands) {
+    }
+
+    private interface RateLimit {
+
+        /**
+         * Takes the right to send one command.
+         *
+         * @return nanoseconds to wait before sending it
+         */
+        long reserve();
+
+    }
+
+    /**
+     * The host's bucket in the database; the local bucket stands in while the database is unavailable.
+     */
+    private class SharedTokenBucket implements RateLimit {
+
+        private final String host;
+        private final TokenBucket fallback;
+
+        SharedTokenBucket(String host, TokenBucket fallback) {
+            this.host = host;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public long reserve() {
+            try {
+                double tokens = mailHostRateRepository.takeToken(host, hostLimits.getCommandsPerSecond(), hostLimits.getBurst());
+                return tokens >= 0 ? 0 : (long) (-tokens / hostLimits.getCommandsPerSecond() * Duration.ofSeconds(1).toNanos());
+            } catch (DataAccessException e) {
+                log.warn("Shared rate limit of {} unavailable, pacing locally: {}", host, e.getMessage());
+                return fallback.reserve();
+            }
+        }
+
+    }
+
+    /**
+     * Token bucket handing out reservations: a caller takes a token right away and waits until the bucket
+     * would have refilled it, so waiting callers are served in arrival order.
+     */
+    private static class TokenBucket implements RateLimit {
+
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double tokensPerSecond, int capacity) {
+            this.tokensPerNano = tokensPerSecond / Duration.ofSeconds(1).toNanos();
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        @Override
+        public synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.orvo.emailgenerator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import org.springframework.stereotype.Service;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-host timeouts of the SMTP conversation phases, derived from the latencies each mail host has shown. Every
+ * host keeps its last {@code orvo.email.smtp.adaptive-timeouts.window} latencies per {@link Phase}; once it has
+ * {@code min-samples} of them, the phase times out after their {@code percentile} times {@code headroom}, clamped
+ * between {@code min-timeout} and the fixed timeout of {@code orvo.email.smtp}. A fast provider is thus given up on
+ * within a second or two when it hangs, while a host that greets slowly on purpose keeps the time it needs. Hosts
+ * without enough history, and all hosts when adaptive timeouts are disabled, get the fixed timeouts.
+ * <p>
+ * A phase that timed out is recorded with the time waited, a lower bound of its latency, so a host that turns
+ * slower has its timeout raised after a few timeouts instead of failing for good.
+ */
+@Service
+public class MailHostTimeouts {
+
+    /**
+     * Phases of an SMTP conversation that are timed separately.
+     */
+    public enum Phase {
+
+        /**
+         * Establishing the TCP connection. The Jakarta engine cannot tell the phases of its handshake apart and
+         * records connection, greeting and {@code EHLO} together.
+         */
+        CONNECT,
+
+        /**
+         * Waiting for the server's greeting.
+         */
+        BANNER,
+
+        /**
+         * {@code MAIL FROM} and the other envelope commands: {@code EHLO}, {@code HELO} and {@code RSET}.
+         */
+        MAIL_FROM,
+
+        /**
+         * {@code RCPT TO}; for a pipelined batch of recipients, all of their replies together.
+         */
+        RCPT_TO
+
+    }
+
+    private final EmailProperties.Smtp smtp;
+    private final EmailProperties.Smtp.AdaptiveTimeouts adaptiveTimeouts;
+    private final Cache<String, Map<Phase, Latencies>> hosts;
+
+    public MailHostTimeouts(EmailProperties emailProperties) {
+        this.smtp = emailProperties.getSmtp();
+        this.adaptiveTimeouts = smtp.getAdaptiveTimeouts();
+        this.hosts = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    /**
+     * @param host  the mail server host
+     * @param phase the phase of the conversation
+     * @return how long to wait for the host in this phase
+     */
+    public Duration getTimeout(String host, Phase phase) {
+        long maxNanos = Duration.ofMillis(phase == Phase.CONNECT ? smtp.getConnectiontimeout()
+                : Math.max(smtp.getTimeout(), smtp.getWritetimeout())).toNanos();
+
+        if (!adaptiveTimeouts.isEnabled()) {
+            return Duration.ofNanos(maxNanos);
+        }
+        Map<Phase, Latencies> phases = hosts.getIfPresent(key(host));
+        Latencies latencies = phases != null ? phases.get(phase) : null;
+        long percentileNanos = latencies != null
+                ? latencies.percentile(adaptiveTimeouts.getPercentile(), adaptiveTimeouts.getMinSamples())
+                : -1;
+
+        if (percentileNanos < 0) {
+            return Duration.ofNanos(maxNanos);
+        }
+        long timeoutNanos = (long) (percentileNanos * adaptiveTimeouts.getHeadroom());
+        return Duration.ofNanos(Math.min(maxNanos, Math.max(adaptiveTimeouts.getMinTimeout().toNanos(), timeoutNanos)));
+    }
+
+    /**
+     * Records how long the host took in a phase: its reply time, or the time waited if the phase timed out.
+     * Other failures tell nothing about the host's latency and are not recorded.
+     */
+    public void record(String host, Phase phase, long nanos) {
+        if (!adaptiveTimeouts.isEnabled()) {
+            return;
+        }
+        hosts.get(key(host), key -> {
+                    Map<Phase, Latencies> phases = new EnumMap<>(Phase.class);
+                    for (Phase each : Phase.values()) {
+                        phases.put(each, new Latencies(adaptiveTimeouts.getWindow()));
+                    }
+                    return phases;
+                })
+                .get(phase)
+                .add(nanos);
+    }
+
+    /**
+     * @return true if the failure, or one of its causes, is a timeout
+     */
+    public static boolean isTimeout(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String key(String host) {
+        return host.toLowerCase();
+    }
+
+    /**
+     * The latest latencies of one host and phase, in a ring buffer.
+     */
+    private static class Latencies {
+
+        private final long[] samples;
+        private int count;
+        private int next;
+        private long percentileNanos = -1;
+        private boolean stale = true;
+
+        Latencies(int window) {
+            this.samples = new long[Math.max(1, window)];
+        }
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            stale = true;
+        }
+
+        /**
+         * @return the percentile of the kept latencies, or -1 if fewer than {@code minSamples} are kept
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (count < Math.max(1, minSamples)) {
+                return -1;
+            }
+            if (stale) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile * count) - 1;
+                percentileNanos = sorted[Math.min(count - 1, Math.max(0, index))];
+                stale = false;
+            }
+            return percentileNanos;
+        }
+
+    }
+
+}
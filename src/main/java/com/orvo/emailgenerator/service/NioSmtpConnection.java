@@ -0,0 +1,308 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.SmtpReply;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One non-blocking SMTP connection, owned by a {@link NioSmtpEventLoop}.
+ * <p>
+ * Work is submitted as exchanges: a group of commands written in one go, completed once the server has sent
+ * one reply per command. Exchanges run one at a time in submission order. Every exchange has its own timeout, so
+ * each phase of the conversation can be given the host's own deadline; an exchange fails when a reply takes longer
+ * than that, and any failure closes the connection and fails the pending exchanges.
+ * <p>
+ * The submitting methods may be called from any thread; everything else runs on the event loop thread.
+ */
+@Slf4j
+class NioSmtpConnection {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final ByteBuffer NO_COMMANDS = ByteBuffer.allocate(0);
+
+    private final NioSmtpEventLoop loop;
+    private final String host;
+    private final long quitTimeoutNanos;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder replyLines = new StringBuilder();
+    private final Queue<Exchange> queue = new ArrayDeque<>();
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private Exchange current;
+    private long deadline;
+    private volatile long connectedAt;
+    private boolean closed;
+
+    NioSmtpConnection(NioSmtpEventLoop loop, String host, Duration quitTimeout) {
+        this.loop = loop;
+        this.host = host;
+        this.quitTimeoutNanos = quitTimeout.toNanos();
+    }
+
+    /**
+     * Connects to the server.
+     *
+     * @param connectTimeout how long to wait for the connection
+     * @param bannerTimeout  how long to wait for the greeting once connected
+     * @return the server's greeting
+     */
+    CompletableFuture<List<SmtpReply>> connect(InetSocketAddress address, Duration connectTimeout, Duration bannerTimeout) {
+        Exchange greeting = new Exchange(NO_COMMANDS, 1, bannerTimeout);
+        loop.execute(() -> startConnect(address, greeting, connectTimeout));
+        return greeting.future;
+    }
+
+    /**
+     * @return when the connection was established, in {@link System#nanoTime()}, or 0 while connecting
+     */
+    long getConnectedAt() {
+        return connectedAt;
+    }
+
+    /**
+     * Writes the commands together and collects one reply per command.
+     *
+     * @param timeout how long to wait for each reply
+     * @return the replies, in command order
+     */
+    CompletableFuture<List<SmtpReply>> send(List<String> commands, Duration timeout) {
+        Exchange exchange = new Exchange(encode(commands), commands.size(), timeout);
+        loop.execute(() -> enqueue(exchange));
+        return exchange.future;
+    }
+
+    /**
+     * Sends {@code QUIT} and closes the connection once it is answered, without waiting for it.
+     */
+    void close() {
+        Exchange quit = new Exchange(encode(List.of("QUIT")), 1, Duration.ofNanos(quitTimeoutNanos));
+        quit.future.whenComplete((replies, e) -> closeChannel());
+        loop.execute(() -> enqueue(quit));
+    }
+
+    void handle(SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                connected();
+            }
+            if (key.isValid() && key.isWritable()) {
+                write();
+            }
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Fails the connection if the current exchange is overdue.
+     *
+     * @return true if the connection is closed and no longer needs watching
+     */
+    boolean checkDeadline(long now) {
+        if (!closed && current != null && now - deadline > 0) {
+            fail(new SocketTimeoutException("No reply from " + host + " in time"));
+        }
+        return closed;
+    }
+
+    void fail(Throwable cause) {
+        closeChannel();
+        if (current != null) {
+            current.future.completeExceptionally(cause);
+            current = null;
+        }
+        Exchange exchange;
+        while ((exchange = queue.poll()) != null) {
+            exchange.future.completeExceptionally(cause);
+        }
+    }
+
+    private void startConnect(InetSocketAddress address, Exchange greeting, Duration connectTimeout) {
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            key = channel.register(loop.selector(), 0, this);
+            loop.track(this);
+            current = greeting;
+            deadline = System.nanoTime() + connectTimeout.toNanos();
+
+            if (channel.connect(address)) {
+                connected();
+            } else {
+                key.interestOps(SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void connected() {
+        connectedAt = System.nanoTime();
+        deadline = connectedAt + current.timeoutNanos;
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void enqueue(Exchange exchange) {
+        if (closed || channel == null) {
+            exchange.future.completeExceptionally(new IOException("Connection to " + host + " is closed"));
+        } else if (current == null) {
+            activate(exchange);
+        } else {
+            queue.add(exchange);
+        }
+    }
+
+    private void activate(Exchange exchange) {
+        current = exchange;
+        deadline = System.nanoTime() + exchange.timeoutNanos;
+        if (exchange.commands.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void write() throws IOException {
+        if (current == null || !current.commands.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        channel.write(current.commands);
+        if (!current.commands.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            fail(new EOFException("Connection closed by " + host));
+            return;
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining() && !closed) {
+            char c = (char) (readBuffer.get() & 0xFF);
+
+            if (c == '\n') {
+                onLine(line.toString().stripTrailing());
+                line.setLength(0);
+            } else if (line.length() < MAX_LINE_LENGTH) {
+                line.append(c);
+            } else {
+                fail(new ProtocolException("Reply line too long from " + host));
+            }
+        }
+        readBuffer.clear();
+    }
+
+    private void onLine(String text) {
+        if (text.length() < 3) {
+            fail(new ProtocolException("Malformed reply from " + host + ": " + text));
+            return;
+        }
+        if (!replyLines.isEmpty()) {
+            replyLines.append('\n');
+        }
+        replyLines.append(text);
+
+        if (text.length() > 3 && text.charAt(3) == '-') {
+            // Continuation line of a multi-line reply.
+            return;
+        }
+
+        int code;
+        try {
+            code = Integer.parseInt(text.substring(0, 3));
+        } catch (NumberFormatException e) {
+            fail(new ProtocolException("Malformed reply from " + host + ": " + text));
+            return;
+        }
+        SmtpReply reply = new SmtpReply(code, replyLines.toString());
+        replyLines.setLength(0);
+
+        if (current == null) {
+            log.debug("Unsolicited reply from {}: {}", host, reply);
+            if (code == 421) {
+                closeChannel();
+            }
+            return;
+        }
+
+        current.replies.add(reply);
+        deadline = System.nanoTime() + current.timeoutNanos;
+
+        if (current.replies.size() == current.expectedReplies) {
+            Exchange done = current;
+            current = null;
+            done.future.complete(done.replies);
+
+            Exchange next = queue.poll();
+            if (next != null && !closed) {
+                activate(next);
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing SMTP connection to {}: {}", host, e.getMessage());
+            }
+        }
+    }
+
+    private static ByteBuffer encode(List<String> commands) {
+        StringBuilder out = new StringBuilder();
+        for (String command : commands) {
+            out.append(command).append("\r\n");
+        }
+        return ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Exchange {
+
+        private final ByteBuffer commands;
+        private final int expectedReplies;
+        private final long timeoutNanos;
+        private final List<SmtpReply> replies;
+        private final CompletableFuture<List<SmtpReply>> future = new CompletableFuture<>();
+
+        private Exchange(ByteBuffer commands, int expectedReplies, Duration timeout) {
+            this.commands = commands;
+            this.expectedReplies = expectedReplies;
+            this.timeoutNanos = timeout.toNanos();
+            this.replies = new ArrayList<>(expectedReplies);
+        }
+
+    }
+
+}
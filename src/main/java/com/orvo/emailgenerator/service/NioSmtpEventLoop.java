@@ -0,0 +1,96 @@
+package com.orvo.emailgenerator.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector thread driving any number of {@link NioSmtpConnection}s. All channel I/O and connection state changes
+ * happen on this thread; other threads hand work over through {@link #execute(Runnable)}.
+ */
+@Slf4j
+class NioSmtpEventLoop implements AutoCloseable {
+
+    /**
+     * Upper bound on a select, so reply deadlines are checked at least this often.
+     */
+    private static final long DEADLINE_CHECK_MILLIS = 100;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Set<NioSmtpConnection> connections = new HashSet<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    NioSmtpEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = Thread.ofPlatform().name(name).daemon().start(this::run);
+    }
+
+    /**
+     * Runs the task on the event loop thread.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * Starts watching the connection's reply deadline. Called on the event loop thread.
+     */
+    void track(NioSmtpConnection connection) {
+        connections.add(connection);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        thread.join();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select(DEADLINE_CHECK_MILLIS);
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    ((NioSmtpConnection) key.attachment()).handle(key);
+                }
+
+                long now = System.nanoTime();
+                connections.removeIf(connection -> connection.checkDeadline(now));
+            } catch (Exception e) {
+                log.error("SMTP event loop error: {}", e.getMessage(), e);
+            }
+        }
+
+        tasks.forEach(Runnable::run);
+        connections.forEach(connection -> connection.fail(new IOException("SMTP event loop stopped")));
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Error closing selector: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.SmtpReply;
+import jakarta.mail.MessagingException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link SmtpSession} over a {@link NioSmtpConnection}. The calling thread only parks while replies are
+ * outstanding; the socket itself is served by a shared {@link NioSmtpEventLoop}.
+ * <p>
+ * When the server advertises {@code PIPELINING}, {@link #verifyAll(List)} writes {@code MAIL FROM} (or
+ * {@code RSET} and {@code MAIL FROM} when a new transaction is due) together with all {@code RCPT TO} commands
+ * and collects the replies in one round trip. Otherwise commands are sent one at a time, as with
+ * {@link JakartaSmtpSession}. Rate limiting, session slots and circuit breaking work the same way.
+ * <p>
+ * Every phase of the conversation waits no longer than the host's current timeout for it from
+ * {@link MailHostTimeouts}, and records how long the host took.
+ */
+@Slf4j
+class NioSmtpSession implements SmtpSession {
+
+    @Getter
+    private final String host;
+    private final int port;
+    private final NioSmtpEventLoop loop;
+    private final String mailFrom;
+    private final String heloName;
+    private final int recipientsPerTransaction;
+    private final MailHostLimiter.HostPermit permit;
+    private final MailHostCircuitBreaker circuitBreaker;
+    private final MailHostTimeouts timeouts;
+    private final SmtpMetrics smtpMetrics;
+
+    private NioSmtpConnection connection;
+    @Getter
+    private boolean pipelining;
+    private boolean transactionOpen;
+    private int recipientsInTransaction;
+
+    NioSmtpSession(String host, int port, NioSmtpEventLoop loop, String mailFrom, int recipientsPerTransaction,
+                   MailHostLimiter.HostPermit permit, MailHostCircuitBreaker circuitBreaker, MailHostTimeouts timeouts,
+                   SmtpMetrics smtpMetrics) {
+        this.host = host;
+        this.port = port;
+        this.loop = loop;
+        this.mailFrom = mailFrom;
+        this.heloName = mailFrom.substring(mailFrom.indexOf('@') + 1);
+        this.recipientsPerTransaction = recipientsPerTransaction;
+        this.permit = permit;
+        this.circuitBreaker = circuitBreaker;
+        this.timeouts = timeouts;
+        this.smtpMetrics = smtpMetrics;
+    }
+
+    /**
+     * Connects to the host and greets it. Unless the server pipelines, the first mail transaction is started too;
+     * otherwise {@code MAIL FROM} travels with the first recipients.
+     *
+     * @throws MessagingException if the connection fails or the greeting or sender is not accepted
+     */
+    void open() throws MessagingException {
+        awaitRate();
+        connection = new NioSmtpConnection(loop, host, timeouts.getTimeout(host, MailHostTimeouts.Phase.MAIL_FROM));
+
+        SmtpReply greeting;
+        long start = smtpMetrics.startConnect();
+        try {
+            greeting = await(connection.connect(new InetSocketAddress(host, port),
+                    timeouts.getTimeout(host, MailHostTimeouts.Phase.CONNECT),
+                    timeouts.getTimeout(host, MailHostTimeouts.Phase.BANNER))).getFirst();
+        } catch (MessagingException e) {
+            smtpMetrics.recordConnect(host, start, false);
+            if (MailHostTimeouts.isTimeout(e)) {
+                recordConnect(start);
+            }
+            disconnect();
+            circuitBreaker.recordFailure(host);
+            throw e;
+        }
+        smtpMetrics.recordConnect(host, start, true);
+        recordConnect(start);
+        circuitBreaker.recordSuccess(host);
+
+        try {
+            if (greeting.getCode() != 220) {
+                throw new MessagingException("Greeting not accepted: " + greeting);
+            }
+            greet();
+            if (!pipelining) {
+                startTransaction();
+            }
+        } catch (MessagingException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public SmtpReply verify(String email) {
+        return verifyAll(List.of(email)).getFirst();
+    }
+
+    @Override
+    public List<SmtpReply> verifyAll(List<String> emails) {
+        List<SmtpReply> replies = new ArrayList<>(emails.size());
+
+        while (replies.size() < emails.size()) {
+            try {
+                if (connection == null) {
+                    if (!circuitBreaker.allowRequest(host)) {
+                        fill(replies, emails.size(), SmtpReply.noReply("Circuit open for " + host));
+                        break;
+                    }
+                    open();
+                }
+
+                List<String> commands = new ArrayList<>();
+                if (transactionOpen && recipientsInTransaction >= recipientsPerTransaction) {
+                    commands.add("RSET");
+                    transactionOpen = false;
+                }
+                if (!transactionOpen) {
+                    commands.add("MAIL FROM:<" + mailFrom + ">");
+                    recipientsInTransaction = 0;
+                }
+                int controlCommands = commands.size();
+                int count = Math.min(emails.size() - replies.size(), recipientsPerTransaction - recipientsInTransaction);
+                List<String> recipients = emails.subList(replies.size(), replies.size() + count);
+
+                for (String email : recipients) {
+                    awaitRate();
+                    commands.add("RCPT TO:<" + email.trim() + ">");
+                }
+
+                long start = smtpMetrics.startProbes(count);
+                List<SmtpReply> commandReplies;
+                try {
+                    commandReplies = exchange(commands, controlCommands);
+                } finally {
+                    smtpMetrics.finishProbes(count);
+                }
+                if (controlCommands > 0 && commandReplies.size() >= controlCommands) {
+                    // The last control command is MAIL FROM.
+                    smtpMetrics.recordCommand(SmtpMetrics.MAIL_FROM, host, start, commandReplies.get(controlCommands - 1));
+                }
+                for (int i = 0; i < controlCommands; i++) {
+                    if (!commandReplies.get(i).isAccepted()) {
+                        throw new MessagingException(commands.get(i).split(":")[0] + " not accepted: " + commandReplies.get(i));
+                    }
+                }
+                transactionOpen = true;
+                recipientsInTransaction += count;
+
+                boolean closing = false;
+                for (int i = 0; i < count; i++) {
+                    SmtpReply reply = commandReplies.get(controlCommands + i);
+                    smtpMetrics.recordCommand(SmtpMetrics.RCPT_TO, host, start, reply);
+                    log.debug("RCPT TO {} response: {}", recipients.get(i), reply.getCode());
+                    replies.add(reply);
+                    closing |= reply.getCode() == 421;
+                }
+                if (closing) {
+                    // The server is closing the channel; reconnect on the next probe.
+                    disconnect();
+                }
+            } catch (MessagingException e) {
+                log.warn("SMTP conversation with {} failed: {}", host, e.getMessage());
+                if (e.getCause() instanceof IOException) {
+                    // Read or write timeouts and dropped connections count against the host.
+                    circuitBreaker.recordFailure(host);
+                }
+                disconnect();
+                fill(replies, emails.size(), SmtpReply.noReply(e.getMessage()));
+            }
+        }
+        return replies;
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+        permit.close();
+    }
+
+    private void greet() throws MessagingException {
+        SmtpReply ehlo = command("EHLO " + heloName, MailHostTimeouts.Phase.MAIL_FROM);
+
+        if (ehlo.isAccepted()) {
+            pipelining = ehlo.getMessage().lines()
+                    .anyMatch(line -> line.length() > 4 && line.substring(4).trim().equalsIgnoreCase("PIPELINING"));
+            return;
+        }
+        SmtpReply helo = command("HELO " + heloName, MailHostTimeouts.Phase.MAIL_FROM);
+        if (!helo.isAccepted()) {
+            throw new MessagingException("HELO not accepted: " + helo);
+        }
+        pipelining = false;
+    }
+
+    private void startTransaction() throws MessagingException {
+        long start = System.nanoTime();
+        SmtpReply reply = command("MAIL FROM:<" + mailFrom + ">", MailHostTimeouts.Phase.MAIL_FROM);
+        smtpMetrics.recordCommand(SmtpMetrics.MAIL_FROM, host, start, reply);
+        log.debug("MAIL FROM response: {}", reply.getCode());
+
+        if (!reply.isAccepted()) {
+            throw new MessagingException("MAIL FROM not accepted: " + reply);
+        }
+        transactionOpen = true;
+        recipientsInTransaction = 0;
+    }
+
+    private SmtpReply command(String command, MailHostTimeouts.Phase phase) throws MessagingException {
+        return send(List.of(command), phase, timeouts.getTimeout(host, phase)).getFirst();
+    }
+
+    /**
+     * Sends the commands in a single write when pipelining, or one by one otherwise. Without pipelining, a rejected
+     * control command stops the exchange early, so fewer replies than commands may be returned.
+     */
+    private List<SmtpReply> exchange(List<String> commands, int controlCommands) throws MessagingException {
+        if (pipelining) {
+            Duration timeout = timeouts.getTimeout(host, MailHostTimeouts.Phase.RCPT_TO);
+            if (controlCommands > 0) {
+                Duration mailFromTimeout = timeouts.getTimeout(host, MailHostTimeouts.Phase.MAIL_FROM);
+                timeout = timeout.compareTo(mailFromTimeout) >= 0 ? timeout : mailFromTimeout;
+            }
+            return send(commands, MailHostTimeouts.Phase.RCPT_TO, timeout);
+        }
+        List<SmtpReply> replies = new ArrayList<>(commands.size());
+        for (String command : commands) {
+            SmtpReply reply = command(command,
+                    replies.size() < controlCommands ? MailHostTimeouts.Phase.MAIL_FROM : MailHostTimeouts.Phase.RCPT_TO);
+            replies.add(reply);
+            if (replies.size() <= controlCommands && !reply.isAccepted()) {
+                break;
+            }
+        }
+        return replies;
+    }
+
+    /**
+     * Sends the commands and records how long the host took to answer them, or how long it was waited for if it
+     * timed out.
+     */
+    private List<SmtpReply> send(List<String> commands, MailHostTimeouts.Phase phase, Duration timeout)
+            throws MessagingException {
+        long start = System.nanoTime();
+        try {
+            List<SmtpReply> replies = await(connection.send(commands, timeout));
+            timeouts.record(host, phase, System.nanoTime() - start);
+            return replies;
+        } catch (MessagingException e) {
+            if (MailHostTimeouts.isTimeout(e)) {
+                timeouts.record(host, phase, System.nanoTime() - start);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Records the connection and greeting latencies, or the time waited in the phase that timed out.
+     */
+    private void recordConnect(long start) {
+        long connectedAt = connection.getConnectedAt();
+        long now = System.nanoTime();
+
+        if (connectedAt == 0) {
+            timeouts.record(host, MailHostTimeouts.Phase.CONNECT, now - start);
+        } else {
+            timeouts.record(host, MailHostTimeouts.Phase.CONNECT, connectedAt - start);
+            timeouts.record(host, MailHostTimeouts.Phase.BANNER, now - connectedAt);
+        }
+    }
+
+    private List<SmtpReply> await(CompletableFuture<List<SmtpReply>> replies) throws MessagingException {
+        try {
+            return replies.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while talking to " + host, e);
+        } catch (ExecutionException e) {
+            Exception cause = e.getCause() instanceof Exception exception ? exception : e;
+            throw new MessagingException(cause.getMessage(), cause);
+        }
+    }
+
+    private void awaitRate() throws MessagingException {
+        try {
+            permit.awaitRate();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for the rate limit of " + host, e);
+        }
+    }
+
+    private void disconnect() {
+        if (connection == null) {
+            return;
+        }
+        connection.close();
+        connection = null;
+        transactionOpen = false;
+    }
+
+    private static void fill(List<SmtpReply> replies, int size, SmtpReply reply) {
+        while (replies.size() < size) {
+            replies.add(reply);
+        }
+    }
+
+}
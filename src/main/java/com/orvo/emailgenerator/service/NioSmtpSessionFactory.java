@@ -0,0 +1,67 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking engine: sessions share a few selector threads ({@code orvo.email.smtp.nio.event-loops}), so open
+ * conversations cost a socket rather than a thread, and pipelining servers answer many probes per round trip.
+ */
+@Component
+@ConditionalOnProperty(prefix = "orvo.email.smtp", name = "engine", havingValue = "nio")
+public class NioSmtpSessionFactory implements SmtpSessionFactory {
+
+    private final EmailProperties emailProperties;
+    private final MailHostCircuitBreaker mailHostCircuitBreaker;
+    private final MailHostTimeouts mailHostTimeouts;
+    private final SmtpMetrics smtpMetrics;
+    private final NioSmtpEventLoop[] eventLoops;
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+    public NioSmtpSessionFactory(EmailProperties emailProperties, MailHostCircuitBreaker mailHostCircuitBreaker,
+                                 MailHostTimeouts mailHostTimeouts, SmtpMetrics smtpMetrics) {
+        this.emailProperties = emailProperties;
+        this.mailHostCircuitBreaker = mailHostCircuitBreaker;
+        this.mailHostTimeouts = mailHostTimeouts;
+        this.smtpMetrics = smtpMetrics;
+        this.eventLoops = new NioSmtpEventLoop[emailProperties.getSmtp().getNio().getEventLoops()];
+        try {
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new NioSmtpEventLoop("smtp-nio-" + i);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open SMTP event loop", e);
+        }
+    }
+
+    @Override
+    public SmtpSession open(String host, MailHostLimiter.HostPermit permit) throws MessagingException {
+        EmailProperties.Smtp smtp = emailProperties.getSmtp();
+        NioSmtpEventLoop loop = eventLoops[Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length)];
+
+        NioSmtpSession session = new NioSmtpSession(host, emailProperties.getPort(), loop, emailProperties.getUsername(),
+                smtp.getRecipientsPerTransaction(), permit, mailHostCircuitBreaker, mailHostTimeouts, smtpMetrics);
+        try {
+            session.open();
+            return session;
+        } catch (MessagingException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        for (NioSmtpEventLoop loop : eventLoops) {
+            loop.close();
+        }
+    }
+
+}
@@ -1,83 +1,138 @@
 package com.orvo.emailgenerator.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.orvo.emailgenerator.config.property.EmailProperties;
-import lombok.RequiredArgsConstructor;
+import com.orvo.emailgenerator.model.SmtpReply;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import com.sun.mail.smtp.SMTPTransport;
-import jakarta.mail.Session;
 import jakarta.mail.MessagingException;
 
-import java.util.Properties;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SmtpEmailVerifier {
 
+    private static final String CATCH_ALL_PROBE_PREFIX = "orvo-probe-";
+
     private final EmailProperties emailProperties;
+    private final MailHostLimiter mailHostLimiter;
+    private final MailHostCircuitBreaker mailHostCircuitBreaker;
+    private final SmtpSessionFactory smtpSessionFactory;
+    private final Cache<String, Boolean> catchAllVerdicts;
+
+    public SmtpEmailVerifier(EmailProperties emailProperties, MailHostLimiter mailHostLimiter,
+                             MailHostCircuitBreaker mailHostCircuitBreaker, SmtpSessionFactory smtpSessionFactory) {
+        this.emailProperties = emailProperties;
+        this.mailHostLimiter = mailHostLimiter;
+        this.mailHostCircuitBreaker = mailHostCircuitBreaker;
+        this.smtpSessionFactory = smtpSessionFactory;
+        this.catchAllVerdicts = Caffeine.newBuilder()
+                .maximumSize(emailProperties.getCatchAll().getMaxDomains())
+                .expireAfterWrite(emailProperties.getCatchAll().getVerdictTtl())
+                .build();
+    }
+
+    /**
+     * Opens an SMTP session with the first reachable mail server of a domain, trying the hosts in order of
+     * preference. Hosts whose circuit is open are skipped, and a host that fails to connect or rejects the
+     * sender makes the next one be tried. Should the server stop answering later on, the session fails over to
+     * the next host in the same way (see {@link FailoverSmtpSession}).
+     *
+     * @param mailServers the domain's mail servers, most preferred first
+     * @return the open session, to be closed by the caller
+     * @throws MessagingException if no mail server could be used; carries the last failure, if any
+     */
+    public SmtpSession openSession(List<String> mailServers) throws MessagingException {
+        FailoverSmtpSession session = new FailoverSmtpSession(mailServers, mailHostCircuitBreaker, this::openSession);
+        session.open();
+        return session;
+    }
+
+    /**
+     * Opens an SMTP session with the given mail server: connects, greets it and sends {@code MAIL FROM}.
+     * The returned session can then probe any number of recipients over the same connection.
+     * Blocks while the host already has its maximum number of open sessions.
+     *
+     * @param smtpHost the SMTP server hostname (e.g. "mx-in.g.apple.com")
+     * @return the open session, to be closed by the caller
+     * @throws MessagingException if the connection cannot be established or the sender is rejected
+     */
+    public SmtpSession openSession(String smtpHost) throws MessagingException {
+        MailHostLimiter.HostPermit permit;
+        try {
+            permit = mailHostLimiter.acquire(smtpHost);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for a session slot on " + smtpHost, e);
+        }
+
+        try {
+            return smtpSessionFactory.open(smtpHost, permit);
+        } catch (MessagingException e) {
+            permit.close();
+            throw e;
+        }
+    }
 
     /**
-     * Verifies an email address by using Jakarta Mail to perform an SMTP handshake.
-     * It constructs a minimal email message and attempts to send it.
-     * If the recipient is rejected during the handshake, a SendFailedException is thrown.
+     * Verifies a single email address with its own SMTP handshake.
+     * Prefer {@link #openSession(String)} when probing several addresses on the same host.
      *
      * @param smtpHost the SMTP server hostname (e.g. "mx-in.g.apple.com")
      * @param toEmail the email address to verify
      * @return true if the SMTP handshake accepts the recipient, false otherwise
      */
     public boolean verifyEmail(String smtpHost, String toEmail) {
-        Properties props = getProperties(smtpHost);
-        Session session = Session.getInstance(props);
-
-        SMTPTransport transport = null;
-        try {
-            transport = (SMTPTransport) session.getTransport("smtp");
-            transport.connect();
+        try (SmtpSession session = openSession(smtpHost)) {
+            return session.verify(toEmail).isAccepted();
+        } catch (MessagingException e) {
+            log.warn("SMTP handshake with {} failed: {}", smtpHost, e.getMessage());
+            return false;
+        }
+    }
 
-            // MAIL FROM
-            String mailFrom = "<" + emailProperties.getUsername() + ">";
-            transport.issueCommand("MAIL FROM:" + mailFrom, 250);
-            int mailFromCode = transport.getLastReturnCode();
-            log.info("MAIL FROM response: {}", mailFromCode);
+    /**
+     * Returns the cached accept-all verdict of a domain, without any network traffic.
+     *
+     * @param domain the domain to look up
+     * @return true if the domain is known to accept any recipient, false if known not to, empty if unknown
+     */
+    public Optional<Boolean> getCatchAllVerdict(String domain) {
+        if (!emailProperties.getCatchAll().isEnabled()) {
+            return Optional.of(false);
+        }
+        return Optional.ofNullable(catchAllVerdicts.getIfPresent(domain));
+    }
 
-            if (mailFromCode != 250) {
-                log.warn("MAIL FROM not accepted: {}", mailFromCode);
-                return false;
-            }
+    /**
+     * Tells whether the domain's mail server accepts any recipient. Unless a verdict is already cached,
+     * the server is asked about a random, non-existent local part; definite answers are cached for
+     * {@code orvo.email.catch-all.verdict-ttl}, while failed or temporary replies are not.
+     *
+     * @param domain  the domain to check
+     * @param session an open session with the domain's mail server
+     * @return true if the server accepts any recipient
+     */
+    public boolean isCatchAll(String domain, SmtpSession session) {
+        Optional<Boolean> verdict = getCatchAllVerdict(domain);
 
-            // RCPT TO
-            String rcptTo = "<" + toEmail.trim() + ">";
-            transport.issueCommand("RCPT TO:" + rcptTo, 250);
-            int rcptToCode = transport.getLastReturnCode();
-            log.info("RCPT TO response: {}", rcptToCode);
+        if (verdict.isPresent()) {
+            return verdict.get();
+        }
 
-            return rcptToCode == 250 || rcptToCode == 251;
+        String probe = CATCH_ALL_PROBE_PREFIX + UUID.randomUUID().toString().replace("-", "").substring(0, 16) + "@" + domain;
+        SmtpReply reply = session.verify(probe);
 
-        } catch (MessagingException e) {
-            log.error("SMTP handshake error for {}: {}", toEmail, e.getMessage());
-            return false;
-        } finally {
-            if (transport != null && transport.isConnected()) {
-                try {
-                    transport.issueCommand("QUIT", 221);
-                    transport.close();
-                } catch (Exception e) {
-                    log.warn("Error closing SMTP connection: {}", e.getMessage());
-                }
-            }
+        if (reply.isAccepted() || reply.getCode() >= 500) {
+            catchAllVerdicts.put(domain, reply.isAccepted());
+            log.info("Domain {} is {}", domain, reply.isAccepted() ? "catch-all" : "not catch-all");
         }
-    }
-
-    private Properties getProperties(String smtpHost) {
-        Properties props = new Properties();
-        props.put("mail.smtp.host", smtpHost);
-        props.put("mail.smtp.port", emailProperties.getPort());
-        props.put("mail.smtp.connectiontimeout", emailProperties.getSmtp().getConnectiontimeout());
-        props.put("mail.smtp.timeout", emailProperties.getSmtp().getTimeout());
-        props.put("mail.smtp.writetimeout", emailProperties.getSmtp().getWritetimeout());
-        return props;
+        return reply.isAccepted();
     }
 
 }
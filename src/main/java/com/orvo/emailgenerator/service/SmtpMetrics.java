@@ -0,0 +1,92 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.SmtpReply;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters of the SMTP conversations, shared by both engines:
+ * <ul>
+ *     <li>{@code orvo.smtp.connect} – connection and greeting latency, by outcome</li>
+ *     <li>{@code orvo.smtp.command} – {@code MAIL FROM} and {@code RCPT TO} latency, by command</li>
+ *     <li>{@code orvo.smtp.replies} – replies by command, reply code and mail host</li>
+ *     <li>{@code orvo.smtp.probes.in-flight} – {@code RCPT TO} probes awaiting a reply</li>
+ * </ul>
+ */
+@Component
+public class SmtpMetrics {
+
+    public static final String MAIL_FROM = "mail_from";
+    public static final String RCPT_TO = "rcpt_to";
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger probesInFlight = new AtomicInteger();
+
+    public SmtpMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("orvo.smtp.probes.in-flight", probesInFlight, AtomicInteger::get)
+                .description("RCPT TO probes awaiting a reply")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the start time to pass to {@link #recordConnect}
+     */
+    public long startConnect() {
+        return System.nanoTime();
+    }
+
+    public void recordConnect(String host, long startNanos, boolean success) {
+        Timer.builder("orvo.smtp.connect")
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (!success) {
+            replyCounter("connect", "none", host).increment();
+        }
+    }
+
+    /**
+     * Marks probes as sent.
+     *
+     * @return the start time to pass to {@link #recordCommand}
+     */
+    public long startProbes(int count) {
+        probesInFlight.addAndGet(count);
+        return System.nanoTime();
+    }
+
+    public void finishProbes(int count) {
+        probesInFlight.addAndGet(-count);
+    }
+
+    /**
+     * Records the latency of one command and the reply it got.
+     *
+     * @param command    {@link #MAIL_FROM} or {@link #RCPT_TO}
+     * @param startNanos when the command, or the pipeline carrying it, was sent
+     */
+    public void recordCommand(String command, String host, long startNanos, SmtpReply reply) {
+        Timer.builder("orvo.smtp.command")
+                .tag("command", command)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        replyCounter(command, reply.getCode() == SmtpReply.NO_REPLY ? "none" : String.valueOf(reply.getCode()), host)
+                .increment();
+    }
+
+    private Counter replyCounter(String command, String code, String host) {
+        return Counter.builder("orvo.smtp.replies")
+                .tag("command", command)
+                .tag("code", code)
+                .tag("host", host)
+                .register(meterRegistry);
+    }
+
+}
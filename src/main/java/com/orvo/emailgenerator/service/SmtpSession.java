@@ -0,0 +1,52 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.SmtpReply;
+
+import java.util.List;
+
+/**
+ * An open SMTP conversation with one mail server, used to probe many recipients over a single connection.
+ * <p>
+ * The sender is announced once per mail transaction; every probe then costs a single {@code RCPT TO}.
+ * No {@code DATA} is ever sent. Sessions are created by a {@link SmtpSessionFactory}, which decides the engine
+ * that carries the conversation.
+ * <p>
+ * Instances are not thread-safe and must be closed once the work for the host is done.
+ */
+public interface SmtpSession extends AutoCloseable {
+
+    /**
+     * @return the mail server this session talks to
+     */
+    String getHost();
+
+    /**
+     * Checks whether the server accepts the given recipient.
+     *
+     * @param email the address to probe
+     * @return the server's reply to {@code RCPT TO}, or {@link SmtpReply#NO_REPLY} if the conversation failed
+     */
+    SmtpReply verify(String email);
+
+    /**
+     * Checks several recipients at once. Sessions that support pipelining send all probes in a single round trip;
+     * others probe them one after another.
+     *
+     * @param emails the addresses to probe
+     * @return the replies, in the order of the given addresses
+     */
+    default List<SmtpReply> verifyAll(List<String> emails) {
+        return emails.stream().map(this::verify).toList();
+    }
+
+    /**
+     * @return true if the server advertised {@code PIPELINING} and {@link #verifyAll(List)} costs one round trip
+     */
+    default boolean isPipelining() {
+        return false;
+    }
+
+    @Override
+    void close();
+
+}
@@ -0,0 +1,21 @@
+package com.orvo.emailgenerator.service;
+
+import jakarta.mail.MessagingException;
+
+/**
+ * Opens {@link SmtpSession}s with mail servers. The implementation in use is chosen by
+ * {@code orvo.email.smtp.engine}.
+ */
+public interface SmtpSessionFactory {
+
+    /**
+     * Connects to the host, greets it and prepares the first mail transaction.
+     *
+     * @param host   the SMTP server hostname
+     * @param permit the host's session slot and rate limit, released when the session is closed
+     * @return the open session, to be closed by the caller
+     * @throws MessagingException if the connection fails or the sender is not accepted
+     */
+    SmtpSession open(String host, MailHostLimiter.HostPermit permit) throws MessagingException;
+
+}
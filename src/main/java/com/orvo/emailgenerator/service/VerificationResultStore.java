@@ -0,0 +1,248 @@
+package com.orvo.emailgenerator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.orvo.emailgenerator.config.property.VerificationStoreProperties;
+import com.orvo.emailgenerator.model.EmailVerdict;
+import com.orvo.emailgenerator.model.SmtpReply;
+import com.orvo.emailgenerator.model.entity.EmailVerification;
+import com.orvo.emailgenerator.repository.EmailVerificationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Verdicts of earlier probes, shared by all batches so repeated and overlapping lists do not probe the same
+ * address twice within {@code orvo.verification-store.freshness-ttl}.
+ * <p>
+ * Verdicts live in the {@code email_verifications} table. In front of it, an LRU of recent verdicts answers
+ * repeated lookups, and a Bloom filter of every stored address rules out never-verified ones without a query.
+ * The filter is filled from the table once the application is ready; until then every miss goes to the database.
+ * Afterwards it polls the table every {@code filter-refresh-interval} for addresses verified since the previous
+ * poll, so verdicts stored by other instances are found too. Until the next poll, such an address may be probed
+ * once more.
+ */
+@Slf4j
+@Service
+public class VerificationResultStore {
+
+    private final VerificationStoreProperties verificationStoreProperties;
+    private final EmailVerificationRepository emailVerificationRepository;
+    private final Cache<String, EmailVerification> recentVerdicts;
+    private final BloomFilter storedEmails;
+    private final ScheduledExecutorService filterRefresher;
+    private volatile boolean filterLoaded;
+    private volatile LocalDateTime filterRefreshedAt;
+
+    public VerificationResultStore(VerificationStoreProperties verificationStoreProperties,
+                                   EmailVerificationRepository emailVerificationRepository) {
+        this.verificationStoreProperties = verificationStoreProperties;
+        this.emailVerificationRepository = emailVerificationRepository;
+        this.recentVerdicts = Caffeine.newBuilder()
+                .maximumSize(verificationStoreProperties.getRecentSize())
+                .build();
+        this.storedEmails = new BloomFilter(verificationStoreProperties.getExpectedEmails(),
+                verificationStoreProperties.getFalsePositiveRate());
+        this.filterRefresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("verification-filter-refresh").factory());
+    }
+
+    /**
+     * Looks up the fresh verdicts of the given addresses.
+     *
+     * @param emails the addresses to look up
+     * @return the verdict of every address verified within the freshness TTL, keyed by normalized address
+     */
+    public Map<String, EmailVerdict> findVerdicts(Collection<String> emails) {
+        if (!verificationStoreProperties.isEnabled() || emails.isEmpty()) {
+            return Map.of();
+        }
+        LocalDateTime freshSince = LocalDateTime.now().minus(verificationStoreProperties.getFreshnessTtl());
+        Map<String, EmailVerdict> verdicts = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+
+        for (String email : emails) {
+            String key = normalize(email);
+            EmailVerification recent = recentVerdicts.getIfPresent(key);
+
+            if (recent != null && recent.getVerifiedAt().isAfter(freshSince)) {
+                verdicts.put(key, recent.getVerdict());
+            } else if (!filterLoaded || storedEmails.mightContain(key)) {
+                unknown.add(key);
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            for (EmailVerification stored : emailVerificationRepository.findAllById(unknown)) {
+                if (stored.getVerifiedAt().isAfter(freshSince)) {
+                    recentVerdicts.put(stored.getEmail(), stored);
+                    verdicts.put(stored.getEmail(), stored.getVerdict());
+                }
+            }
+        }
+        return verdicts;
+    }
+
+    /**
+     * Stores the definite replies among the given probe results in a single statement; temporary failures and
+     * missing replies are ignored.
+     *
+     * @param replies the replies received, keyed by probed address
+     * @param mxHost  the mail server that answered
+     */
+    public void record(Map<String, SmtpReply> replies, String mxHost) {
+        if (!verificationStoreProperties.isEnabled()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, EmailVerification> verifications = new HashMap<>();
+
+        replies.forEach((email, reply) -> {
+            if (!reply.isAccepted() && reply.getCode() < 500) {
+                return;
+            }
+            EmailVerification verification = EmailVerification.builder()
+                    .email(normalize(email))
+                    .smtpCode(reply.getCode())
+                    .verdict(reply.isAccepted() ? EmailVerdict.ACCEPTED : EmailVerdict.REJECTED)
+                    .mxHost(mxHost)
+                    .verifiedAt(now)
+                    .build();
+            verifications.put(verification.getEmail(), verification);
+        });
+
+        if (verifications.isEmpty()) {
+            return;
+        }
+        emailVerificationRepository.upsertAll(verifications.values());
+        verifications.forEach((email, verification) -> {
+            recentVerdicts.put(email, verification);
+            storedEmails.add(email);
+        });
+    }
+
+    /**
+     * Fills the Bloom filter with the addresses verified within the freshness TTL, then starts refreshing it.
+     */
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFilter() {
+        if (!verificationStoreProperties.isEnabled()) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime freshSince = startedAt.minus(verificationStoreProperties.getFreshnessTtl());
+        LongAdder count = new LongAdder();
+
+        try (Stream<String> emails = emailVerificationRepository.streamEmailsVerifiedAfter(freshSince)) {
+            emails.forEach(email -> {
+                storedEmails.add(email);
+                count.increment();
+            });
+        }
+        filterRefreshedAt = startedAt;
+        filterLoaded = true;
+        log.info("Loaded {} stored email verdicts into the filter", count.sum());
+
+        long intervalMillis = verificationStoreProperties.getFilterRefreshInterval().toMillis();
+        filterRefresher.scheduleWithFixedDelay(this::refreshFilter, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        filterRefresher.shutdownNow();
+    }
+
+    /**
+     * Adds the addresses verified since the previous refresh. A failed refresh is retried from the same point on the
+     * next run, so no verdict is skipped.
+     */
+    private void refreshFilter() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            List<String> emails = emailVerificationRepository.findEmailsVerifiedAfter(
+                    filterRefreshedAt.minus(verificationStoreProperties.getFilterRefreshOverlap()));
+            emails.forEach(storedEmails::add);
+            filterRefreshedAt = startedAt;
+            log.debug("Refreshed the filter with {} email verdicts", emails.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh the email verdict filter", e);
+        }
+    }
+
+    public static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Thread-safe Bloom filter over strings, using double hashing of a 64-bit FNV-1a hash.
+     */
+    private static class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        private BloomFilter(long expectedEntries, double falsePositiveRate) {
+            long size = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bitCount = Math.max(64, size);
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        }
+
+        private void add(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hash, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        private boolean mightContain(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hash, i);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long index(long hash, int i) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            return Math.floorMod(h1 + (long) i * h2, bitCount);
+        }
+
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+    }
+
+}
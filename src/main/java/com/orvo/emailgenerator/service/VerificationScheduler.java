@@ -0,0 +1,176 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Shares the verification executor between the batches in progress by start-time fair queueing: every batch
+ * queues its domain groups separately, and a free slot goes to the queued group with the lowest start tag, which
+ * grows with the rows the batch already had verified divided by its weight. A small upload arriving during a
+ * large import is thus verified next instead of after everything the import has queued.
+ * <p>
+ * At most {@code orvo.batch.verification-concurrency} groups are handed to the executor at a time. While other
+ * batches are waiting, a batch gets no more than {@code orvo.batch.fair-share.max-in-flight-domains} of them; a
+ * batch running alone may use them all. The lock is a {@link ReentrantLock}, so submitting from virtual threads
+ * does not pin their carriers.
+ */
+@Service
+public class VerificationScheduler {
+
+    private final ExecutorService verificationExecutor;
+    private final int concurrency;
+    private final int maxInFlightPerBatch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<UUID, BatchQueue> batches = new HashMap<>();
+    private double virtualTime;
+    private int inFlight;
+    private int queued;
+
+    public VerificationScheduler(BatchProperties batchProperties, ExecutorService verificationExecutor,
+                                 MeterRegistry meterRegistry) {
+        this.verificationExecutor = verificationExecutor;
+        this.concurrency = batchProperties.getVerificationConcurrency();
+        this.maxInFlightPerBatch = batchProperties.getFairShare().getMaxInFlightDomains();
+
+        Gauge.builder("orvo.verification.queued", this, VerificationScheduler::getQueued)
+                .description("Domain groups waiting for a verification slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the verification of one domain group of a batch.
+     *
+     * @param batchId the batch the group belongs to
+     * @param weight  the batch's weight
+     * @param rows    the rows of the group, its cost in the batch's share
+     * @param task    the verification, run on the verification executor
+     * @return the result of the task
+     */
+    public <T> CompletableFuture<T> submit(UUID batchId, int weight, int rows, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            BatchQueue batch = batches.computeIfAbsent(batchId, id -> new BatchQueue(Math.max(1, weight)));
+            double start = Math.max(virtualTime, batch.lastFinish);
+            batch.lastFinish = start + (double) rows / batch.weight;
+            batch.tasks.add(new Task(start, () -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }, result));
+            queued++;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    private int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands queued groups to the executor while there are free slots, lowest start tag first among the batches
+     * below their cap, or among all batches if every waiting batch is at its cap.
+     */
+    private void dispatch() {
+        while (inFlight < concurrency) {
+            Map.Entry<UUID, BatchQueue> next = next(true);
+            if (next == null) {
+                next = next(false);
+            }
+            if (next == null) {
+                return;
+            }
+
+            UUID batchId = next.getKey();
+            BatchQueue batch = next.getValue();
+            Task task = batch.tasks.poll();
+            virtualTime = Math.max(virtualTime, task.start);
+            queued--;
+            inFlight++;
+            batch.inFlight++;
+            try {
+                verificationExecutor.execute(() -> {
+                    try {
+                        task.body.run();
+                    } finally {
+                        finished(batchId, batch);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight--;
+                batch.inFlight--;
+                if (batch.inFlight == 0 && batch.tasks.isEmpty()) {
+                    batches.remove(batchId);
+                }
+                task.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private Map.Entry<UUID, BatchQueue> next(boolean belowCap) {
+        Map.Entry<UUID, BatchQueue> next = null;
+        for (Map.Entry<UUID, BatchQueue> entry : batches.entrySet()) {
+            BatchQueue batch = entry.getValue();
+            if (!batch.tasks.isEmpty() && (!belowCap || batch.inFlight < maxInFlightPerBatch)
+                    && (next == null || batch.tasks.peek().start < next.getValue().tasks.peek().start)) {
+                next = entry;
+            }
+        }
+        return next;
+    }
+
+    private void finished(UUID batchId, BatchQueue batch) {
+        lock.lock();
+        try {
+            inFlight--;
+            batch.inFlight--;
+            if (batch.inFlight == 0 && batch.tasks.isEmpty()) {
+                batches.remove(batchId);
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class BatchQueue {
+
+        private final int weight;
+        private final Queue<Task> tasks = new ArrayDeque<>();
+        private double lastFinish;
+        private int inFlight;
+
+        BatchQueue(int weight) {
+            this.weight = weight;
+        }
+
+    }
+
+    private record Task(double start, Runnable body, CompletableFuture<?> result) {
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.orvo.emailgenerator.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest
+class LeadBatchChunkRepositoryTests {
+
+    private static final List<String[]> ROWS = List.<String[]>of(new String[]{"Jane", "Doe", "Example", "example.test"});
+
+    private final UUID batchId = UUID.randomUUID();
+
+    @Autowired
+    private LeadBatchChunkRepository leadBatchChunkRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from lead_batch_chunks where batch_id = ?", batchId);
+    }
+
+    @Test
+    void queuesRetryAvailableAfterTheDelay() {
+        leadBatchChunkRepository.insertRetry(batchId, 3, 2, ROWS, Duration.ofMinutes(30));
+
+        Map<String, Object> chunk = jdbcTemplate.queryForMap("""
+                select chunk_no, retries, state, extract(epoch from available_at - clock_timestamp()) as delay
+                from lead_batch_chunks
+                where batch_id = ?
+                """, batchId);
+
+        assertThat(chunk.get("chunk_no")).isEqualTo(3);
+        assertThat(chunk.get("retries")).isEqualTo(2);
+        assertThat(chunk.get("state")).isEqualTo("PENDING");
+        assertThat(((Number) chunk.get("delay")).doubleValue()).isCloseTo(Duration.ofMinutes(30).toSeconds(), within(5.0));
+    }
+
+    @Test
+    void keepsRetriesOfTheSameChunkApart() {
+        leadBatchChunkRepository.insertRetry(batchId, 0, 1, ROWS, Duration.ofMinutes(30));
+        leadBatchChunkRepository.insertRetry(batchId, 0, 2, ROWS, Duration.ofMinutes(30));
+
+        assertThat(leadBatchChunkRepository.countUnfinished(batchId)).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.orvo.emailgenerator.repository;
+
+import com.orvo.emailgenerator.model.LeadStatus;
+import com.orvo.emailgenerator.model.entity.Lead;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class LeadBulkRepositoryTests {
+
+    @Autowired
+    private LeadRepository leadRepository;
+
+    @Test
+    void skipsEmailAlreadyStoredForTheBatch() {
+        UUID batchId = UUID.randomUUID();
+        String email = "jane.doe@" + batchId + ".test";
+        leadRepository.insertIgnoringDuplicates(List.of(lead(batchId, "Jane", email)));
+
+        List<Lead> inserted = leadRepository.insertIgnoringDuplicates(List.of(
+                lead(batchId, "Jane", email),
+                lead(batchId, "John", "john.doe@" + batchId + ".test")));
+
+        assertThat(inserted).extracting(Lead::getFirstName).containsExactly("John");
+    }
+
+    @Test
+    void skipsDuplicatesWithinTheList() {
+        UUID batchId = UUID.randomUUID();
+        String email = "jane.doe@" + batchId + ".test";
+
+        List<Lead> inserted = leadRepository.insertIgnoringDuplicates(List.of(
+                lead(batchId, "Jane", email),
+                lead(batchId, "Janet", email),
+                lead(batchId, "Nobody", null),
+                lead(batchId, "Nobody", null)));
+
+        assertThat(inserted).extracting(Lead::getFirstName).containsExactly("Jane", "Nobody", "Nobody");
+    }
+
+    @Test
+    void storesEmailAgainForAnotherBatch() {
+        UUID firstBatchId = UUID.randomUUID();
+        UUID secondBatchId = UUID.randomUUID();
+        String email = "jane.doe@" + firstBatchId + ".test";
+        leadRepository.insertIgnoringDuplicates(List.of(lead(firstBatchId, "Jane", email)));
+
+        List<Lead> inserted = leadRepository.insertIgnoringDuplicates(List.of(lead(secondBatchId, "Jane", email)));
+
+        assertThat(inserted).hasSize(1);
+    }
+
+    private Lead lead(UUID batchId, String firstName, String email) {
+        return Lead.builder()
+                .batchId(batchId)
+                .firstName(firstName)
+                .lastName("Doe")
+                .companyName("Example")
+                .companyDomain("example.test")
+                .generatedEmail(email)
+                .status(email != null ? LeadStatus.EMAIL_CREATED : LeadStatus.EMAIL_NOT_FOUND)
+                .build();
+    }
+
+}
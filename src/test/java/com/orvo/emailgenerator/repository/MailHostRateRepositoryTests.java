@@ -0,0 +1,47 @@
+package com.orvo.emailgenerator.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest
+class MailHostRateRepositoryTests {
+
+    private final String host = "mx." + UUID.randomUUID() + ".test";
+
+    @Autowired
+    private MailHostRateRepository mailHostRateRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from mail_host_rate_limits where host = ?", host);
+    }
+
+    @Test
+    void takesTokensIntoDebt() {
+        assertThat(mailHostRateRepository.takeToken(host, 1, 2)).isEqualTo(1.0);
+        assertThat(mailHostRateRepository.takeToken(host, 1, 2)).isCloseTo(0.0, within(0.1));
+        assertThat(mailHostRateRepository.takeToken(host, 1, 2)).isCloseTo(-1.0, within(0.1));
+    }
+
+    @Test
+    void refillsUpToTheCapacity() throws InterruptedException {
+        mailHostRateRepository.takeToken(host, 10, 2);
+        mailHostRateRepository.takeToken(host, 10, 2);
+        assertThat(mailHostRateRepository.takeToken(host, 10, 2)).isCloseTo(-1.0, within(0.2));
+
+        Thread.sleep(300);
+        assertThat(mailHostRateRepository.takeToken(host, 10, 2)).isCloseTo(1.0, within(0.05));
+    }
+
+}
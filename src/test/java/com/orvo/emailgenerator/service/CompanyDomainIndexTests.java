@@ -0,0 +1,123 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.CompanyIndexProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompanyDomainIndexTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void normalizesCaseMarksAndPunctuation() {
+        assertThat(CompanyDomainIndex.normalize("Acme Widgets")).isEqualTo("acmewidgets");
+        assertThat(CompanyDomainIndex.normalize("ACME-Widgets!")).isEqualTo("acmewidgets");
+        assertThat(CompanyDomainIndex.normalize("Café Müller")).isEqualTo("cafemuller");
+        assertThat(CompanyDomainIndex.normalize("Macy's")).isEqualTo("macys");
+        assertThat(CompanyDomainIndex.normalize("A.B. Dick")).isEqualTo("abdick");
+        assertThat(CompanyDomainIndex.normalize("Johnson & Johnson")).isEqualTo("johnsonandjohnson");
+    }
+
+    @Test
+    void dropsLegalFormsAndLeadingArticle() {
+        assertThat(CompanyDomainIndex.normalize("Acme Widgets, Inc.")).isEqualTo("acmewidgets");
+        assertThat(CompanyDomainIndex.normalize("Acme Holding Co. Ltd")).isEqualTo("acmeholding");
+        assertThat(CompanyDomainIndex.normalize("Siemens AG")).isEqualTo("siemens");
+        assertThat(CompanyDomainIndex.normalize("The Home Depot")).isEqualTo("homedepot");
+    }
+
+    @Test
+    void keepsNamesMadeOfLegalFormsOnly() {
+        assertThat(CompanyDomainIndex.normalize("Limited")).isEqualTo("limited");
+        assertThat(CompanyDomainIndex.normalize("The")).isEqualTo("the");
+        assertThat(CompanyDomainIndex.normalize(" -- ")).isEmpty();
+        assertThat(CompanyDomainIndex.normalize(null)).isEmpty();
+    }
+
+    @Test
+    void measuresEditDistance() {
+        assertThat(CompanyDomainIndex.distance("acme", "acme", 2)).isZero();
+        assertThat(CompanyDomainIndex.distance("acme", "acne", 2)).isEqualTo(1);
+        assertThat(CompanyDomainIndex.distance("acme", "acmes", 2)).isEqualTo(1);
+        assertThat(CompanyDomainIndex.distance("acme", "ace", 2)).isEqualTo(1);
+        assertThat(CompanyDomainIndex.distance("kitten", "sitting", 3)).isEqualTo(3);
+        assertThat(CompanyDomainIndex.distance("", "abc", 3)).isEqualTo(3);
+    }
+
+    @Test
+    void capsEditDistanceAboveTheMaximum() {
+        assertThat(CompanyDomainIndex.distance("kitten", "sitting", 2)).isEqualTo(3);
+        assertThat(CompanyDomainIndex.distance("acme", "acmewidgets", 2)).isEqualTo(3);
+        assertThat(CompanyDomainIndex.distance("abcdef", "uvwxyz", 1)).isEqualTo(2);
+    }
+
+    @Test
+    void findsDomainsOfTheDataset() throws IOException {
+        CompanyDomainIndex index = index("""
+                company_name,domain
+                "Acme Widgets, Inc.",https://www.acme-widgets.com/about
+                Globex Corporation,globex.com
+                Initech,not-a-domain
+                """);
+
+        assertThat(index.findDomain("ACME Widgets")).contains("acme-widgets.com");
+        assertThat(index.findDomain("Acme Widget")).contains("acme-widgets.com");
+        assertThat(index.findDomain("Globex")).contains("globex.com");
+        assertThat(index.findDomain("Initech")).isEmpty();
+        assertThat(index.findDomain("Umbrella")).isEmpty();
+    }
+
+    @Test
+    void rebuildsWhenTheDatasetChanges() throws IOException, InterruptedException {
+        CompanyDomainIndex index = index("""
+                company_name,domain
+                Globex Corporation,globex.com
+                """);
+        Path dataset = Files.writeString(directory.resolve("companies.csv"), """
+                company_name,domain
+                Globex Corporation,globex.example
+                """);
+        Files.setLastModifiedTime(dataset, FileTime.from(Instant.now().plusSeconds(60)));
+
+        try {
+            index.startDatasetChecks();
+            long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            while (!index.findDomain("Globex").equals(Optional.of("globex.example")) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            index.close();
+        }
+
+        assertThat(index.findDomain("Globex")).contains("globex.example");
+    }
+
+    private CompanyDomainIndex index(String dataset) throws IOException {
+        CompanyIndexProperties properties = new CompanyIndexProperties();
+        properties.setDataset(Files.writeString(directory.resolve("companies.csv"), dataset));
+        properties.setIndexFile(directory.resolve("companies.bin"));
+        properties.setCheckInterval(Duration.ofMillis(10));
+        CompanyIndexProperties.Fuzzy fuzzy = new CompanyIndexProperties.Fuzzy();
+        fuzzy.setEnabled(true);
+        fuzzy.setPrefixLength(3);
+        fuzzy.setMaxDistance(2);
+        fuzzy.setMaxCandidates(1000);
+        properties.setFuzzy(fuzzy);
+        return new CompanyDomainIndex(properties, new SimpleMeterRegistry());
+    }
+
+}
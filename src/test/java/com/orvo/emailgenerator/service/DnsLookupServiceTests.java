@@ -0,0 +1,231 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.DnsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.SOARecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DnsLookupServiceTests {
+
+    private static final String DOMAIN = "example.com";
+    private static final Duration MIN_TTL = Duration.ofSeconds(30);
+    private static final Duration MAX_TTL = Duration.ofHours(6);
+    private static final Duration NEGATIVE_TTL = Duration.ofMinutes(5);
+
+    private final Resolver resolver = mock(Resolver.class);
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final List<Integer> queries = new ArrayList<>();
+    private final DnsLookupService dnsLookupService =
+            new DnsLookupService(dnsProperties(), new SimpleMeterRegistry(), resolver, nanoTime::get);
+
+    @Test
+    void ordersMailServersByPriority() throws Exception {
+        answer(Rcode.NOERROR, List.of(mx(20, "mx2.example.com.", 3600), mx(10, "mx1.example.com.", 3600),
+                mx(30, "mx1.example.com.", 3600)), List.of());
+
+        assertThat(dnsLookupService.getMailServers(" Example.COM. ")).containsExactly("mx1.example.com", "mx2.example.com");
+        assertThat(dnsLookupService.getMailServer(DOMAIN)).contains("mx1.example.com");
+        assertThat(queries).containsExactly(Type.MX);
+    }
+
+    @Test
+    void cachesAnswersForTheLowestRecordTtl() throws Exception {
+        answer(Rcode.NOERROR, List.of(mx(10, "mx1.example.com.", 600), mx(20, "mx2.example.com.", 120)), List.of());
+        dnsLookupService.getMailServers(DOMAIN);
+
+        advance(Duration.ofSeconds(119));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(1);
+
+        advance(Duration.ofSeconds(2));
+        assertThat(dnsLookupService.getMailServers(DOMAIN)).containsExactly("mx1.example.com", "mx2.example.com");
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void clampsRecordTtlToMinTtl() throws Exception {
+        answer(Rcode.NOERROR, List.of(mx(10, "mx1.example.com.", 1)), List.of());
+        dnsLookupService.getMailServers(DOMAIN);
+
+        advance(MIN_TTL.minusSeconds(1));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(1);
+
+        advance(Duration.ofSeconds(2));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void clampsRecordTtlToMaxTtl() throws Exception {
+        answer(Rcode.NOERROR, List.of(mx(10, "mx1.example.com.", Duration.ofDays(1).toSeconds())), List.of());
+        dnsLookupService.getMailServers(DOMAIN);
+
+        advance(MAX_TTL.plusSeconds(1));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void fallsBackToARecordWithoutMxRecords() throws Exception {
+        when(resolver.sendAsync(any(Message.class))).thenAnswer(invocation -> {
+            Message query = invocation.getArgument(0);
+            int type = query.getQuestion().getType();
+            queries.add(type);
+            List<Record> answers = type == Type.A
+                    ? List.of(new ARecord(name(DOMAIN + "."), DClass.IN, 300, InetAddress.getByName("192.0.2.1")))
+                    : List.of();
+            return CompletableFuture.completedFuture(response(query, Rcode.NOERROR, answers, List.of()));
+        });
+
+        assertThat(dnsLookupService.getMailServers(DOMAIN)).containsExactly("192.0.2.1");
+        assertThat(queries).containsExactly(Type.MX, Type.A);
+    }
+
+    @Test
+    void treatsNullMxAsNoMailServer() throws Exception {
+        answer(Rcode.NOERROR, List.of(mx(0, ".", 3600)), List.of(soa(3600, 3600)));
+
+        assertThat(dnsLookupService.getMailServers(DOMAIN)).isEmpty();
+        assertThat(queries).containsExactly(Type.MX);
+
+        advance(NEGATIVE_TTL.minusSeconds(1));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(1);
+    }
+
+    @Test
+    void cachesNxdomainForTheSoaMinimum() throws Exception {
+        answer(Rcode.NXDOMAIN, List.of(), List.of(soa(3600, 60)));
+
+        assertThat(dnsLookupService.getMailServers(DOMAIN)).isEmpty();
+        advance(Duration.ofSeconds(59));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(1);
+
+        advance(Duration.ofSeconds(2));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void cachesNxdomainForTheSoaTtlIfLower() throws Exception {
+        answer(Rcode.NXDOMAIN, List.of(), List.of(soa(60, 3600)));
+        dnsLookupService.getMailServers(DOMAIN);
+
+        advance(Duration.ofSeconds(61));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void capsNegativeCachingAtNegativeTtl() throws Exception {
+        answer(Rcode.NXDOMAIN, List.of(), List.of(soa(86400, 86400)));
+        dnsLookupService.getMailServers(DOMAIN);
+
+        advance(NEGATIVE_TTL.minusSeconds(1));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(1);
+
+        advance(Duration.ofSeconds(2));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void cachesNegativeAnswersWithoutSoaForNegativeTtl() throws Exception {
+        answer(Rcode.NXDOMAIN, List.of(), List.of());
+        dnsLookupService.getMailServers(DOMAIN);
+
+        advance(NEGATIVE_TTL.minusSeconds(1));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(1);
+
+        advance(Duration.ofSeconds(2));
+        dnsLookupService.getMailServers(DOMAIN);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void doesNotCacheServerFailures() throws Exception {
+        answer(Rcode.SERVFAIL, List.of(), List.of());
+
+        assertThat(dnsLookupService.getMailServers(DOMAIN)).isEmpty();
+        assertThat(dnsLookupService.getMailServers(DOMAIN)).isEmpty();
+        assertThat(queries).hasSize(2);
+    }
+
+    /**
+     * Answers every query with the given rcode and records, keeping track of the queried types.
+     */
+    private void answer(int rcode, List<Record> answers, List<Record> authority) {
+        when(resolver.sendAsync(any(Message.class))).thenAnswer(invocation -> {
+            Message query = invocation.getArgument(0);
+            queries.add(query.getQuestion().getType());
+            return CompletableFuture.completedFuture(response(query, rcode, answers, authority));
+        });
+    }
+
+    private void advance(Duration duration) {
+        nanoTime.addAndGet(duration.toNanos());
+    }
+
+    private static Message response(Message query, int rcode, List<Record> answers, List<Record> authority) {
+        Message response = new Message(query.getHeader().getID());
+        response.getHeader().setRcode(rcode);
+        response.addRecord(query.getQuestion(), Section.QUESTION);
+        answers.forEach(record -> response.addRecord(record, Section.ANSWER));
+        authority.forEach(record -> response.addRecord(record, Section.AUTHORITY));
+        return response;
+    }
+
+    private static MXRecord mx(int priority, String target, long ttl) throws TextParseException {
+        return new MXRecord(name(DOMAIN + "."), DClass.IN, ttl, priority, name(target));
+    }
+
+    private static SOARecord soa(long ttl, long minimum) throws TextParseException {
+        return new SOARecord(name(DOMAIN + "."), DClass.IN, ttl, name("ns1.example.com."),
+                name("hostmaster.example.com."), 1, 7200, 3600, 1209600, minimum);
+    }
+
+    private static Name name(String name) throws TextParseException {
+        return Name.fromString(name);
+    }
+
+    private static DnsProperties dnsProperties() {
+        DnsProperties.Cache cache = new DnsProperties.Cache();
+        cache.setMaxSize(100);
+        cache.setMinTtl(MIN_TTL);
+        cache.setMaxTtl(MAX_TTL);
+        cache.setNegativeTtl(NEGATIVE_TTL);
+        DnsProperties dnsProperties = new DnsProperties();
+        dnsProperties.setTimeout(Duration.ofSeconds(5));
+        dnsProperties.setCache(cache);
+        return dnsProperties;
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.model.entity.DomainPatternStat;
+import com.orvo.emailgenerator.repository.DomainPatternStatRepository;
+import com.orvo.emailgenerator.service.DomainPatternStats.PatternRanking;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DomainPatternStatsTests {
+
+    private static final String DOMAIN = "example.com";
+    private static final List<String> PATTERNS = List.of("{first}.{last}", "{first}", "{f}{last}", "{last}");
+
+    private final DomainPatternStatRepository repository = mock(DomainPatternStatRepository.class);
+    private final DomainPatternStats domainPatternStats = new DomainPatternStats(emailProperties(), repository);
+
+    @Test
+    void keepsDefaultOrderWithoutHits() {
+        PatternRanking ranking = domainPatternStats.rank(DOMAIN, PATTERNS);
+
+        assertThat(ranking.getDomain()).isEqualTo(DOMAIN);
+        assertThat(ranking.getPatterns()).isEqualTo(PATTERNS);
+        assertThat(ranking.isConfirmed()).isFalse();
+    }
+
+    @Test
+    void ranksPatternsByStoredHits() {
+        storedHits(stat("{last}", 2), stat("{f}{last}", 5), stat("{unused}", 9));
+
+        PatternRanking ranking = domainPatternStats.rank(DOMAIN, PATTERNS);
+
+        assertThat(ranking.getPatterns()).containsExactly("{f}{last}", "{last}", "{first}.{last}", "{first}");
+    }
+
+    @Test
+    void confirmsPatternWithEnoughHitsAndShare() {
+        storedHits(stat("{f}{last}", 3), stat("{last}", 2));
+
+        assertThat(domainPatternStats.rank(DOMAIN, PATTERNS).isConfirmed()).isTrue();
+    }
+
+    @Test
+    void doesNotConfirmPatternBelowConfirmationHits() {
+        storedHits(stat("{f}{last}", 2));
+
+        assertThat(domainPatternStats.rank(DOMAIN, PATTERNS).isConfirmed()).isFalse();
+    }
+
+    @Test
+    void doesNotConfirmPatternBelowConfirmationShare() {
+        storedHits(stat("{f}{last}", 3), stat("{last}", 3));
+
+        assertThat(domainPatternStats.rank(DOMAIN, PATTERNS).isConfirmed()).isFalse();
+    }
+
+    @Test
+    void ranksRecordedHitsWithoutReloading() {
+        storedHits(stat("{first}", 1));
+        domainPatternStats.rank(DOMAIN, PATTERNS);
+
+        domainPatternStats.recordHit(DOMAIN, "{last}");
+        domainPatternStats.recordHit(DOMAIN, "{last}");
+        domainPatternStats.recordHit(DOMAIN, "{last}");
+
+        PatternRanking ranking = domainPatternStats.rank(DOMAIN, PATTERNS);
+        assertThat(ranking.getPatterns()).startsWith("{last}", "{first}");
+        assertThat(ranking.isConfirmed()).isTrue();
+        verify(repository, times(3)).recordHit(eq(DOMAIN), eq("{last}"), any(LocalDateTime.class));
+        verify(repository, times(1)).findAllByIdDomain(DOMAIN);
+    }
+
+    @Test
+    void loadsHitsOutsideTheCache() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findAllByIdDomain(DOMAIN))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of();
+                })
+                .thenReturn(List.of());
+
+        CompletableFuture<PatternRanking> slow = CompletableFuture.supplyAsync(() -> domainPatternStats.rank(DOMAIN, PATTERNS));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // A slow load of the domain blocks neither other domains nor other callers of the same domain.
+        CompletableFuture.runAsync(() -> {
+            domainPatternStats.rank("other.com", PATTERNS);
+            domainPatternStats.recordHit(DOMAIN, "{last}");
+        }).get(1, TimeUnit.SECONDS);
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS).getPatterns()).startsWith("{last}");
+        assertThat(domainPatternStats.rank(DOMAIN, PATTERNS).getPatterns()).startsWith("{last}");
+    }
+
+    private void storedHits(DomainPatternStat... stats) {
+        when(repository.findAllByIdDomain(DOMAIN)).thenReturn(List.of(stats));
+    }
+
+    private static DomainPatternStat stat(String pattern, int hits) {
+        return new DomainPatternStat(new DomainPatternStat.Id(DOMAIN, pattern), hits, LocalDateTime.now());
+    }
+
+    private static EmailProperties emailProperties() {
+        EmailProperties.PatternStats patternStats = new EmailProperties.PatternStats();
+        patternStats.setConfirmationHits(3);
+        patternStats.setConfirmationShare(0.6);
+        patternStats.setMaxDomains(100);
+        EmailProperties emailProperties = new EmailProperties();
+        emailProperties.setPatternStats(patternStats);
+        return emailProperties;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.service.EmailPatternTemplate.NormalizedName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class EmailPatternTemplateTests {
+
+    private static final NormalizedName JANE_DOE = new NormalizedName("jane", "doe");
+
+    @Test
+    void resolvesPlaceholdersAndLiterals() {
+        assertThat(localPart("{first}.{last}", JANE_DOE)).isEqualTo("jane.doe");
+        assertThat(localPart("{f}{last}", JANE_DOE)).isEqualTo("jdoe");
+        assertThat(localPart("{first}_{l}", JANE_DOE)).isEqualTo("jane_d");
+        assertThat(localPart("mail.{f}.{l}.x", JANE_DOE)).isEqualTo("mail.j.d.x");
+    }
+
+    @Test
+    void rejectsNameMissingAPlaceholder() {
+        EmailPatternTemplate template = EmailPatternTemplate.compile("{first}.{l}");
+
+        assertThat(template.appendLocalPart(new StringBuilder(), new NormalizedName("jane", ""))).isFalse();
+        assertThat(template.appendLocalPart(new StringBuilder(), new NormalizedName("", "doe"))).isFalse();
+    }
+
+    @Test
+    void appendsToTheBuffer() {
+        StringBuilder out = new StringBuilder("prefix:");
+
+        assertThat(EmailPatternTemplate.compile("{last}").appendLocalPart(out, JANE_DOE)).isTrue();
+        assertThat(out).hasToString("prefix:doe");
+    }
+
+    @Test
+    void keepsTheTemplate() {
+        assertThat(EmailPatternTemplate.compile("{first}.{last}").getTemplate()).isEqualTo("{first}.{last}");
+    }
+
+    @Test
+    void rejectsMalformedTemplates() {
+        assertThatIllegalArgumentException().isThrownBy(() -> EmailPatternTemplate.compile("{first"))
+                .withMessageContaining("Unclosed placeholder");
+        assertThatIllegalArgumentException().isThrownBy(() -> EmailPatternTemplate.compile("{middle}"))
+                .withMessageContaining("Unknown placeholder {middle}");
+        assertThatIllegalArgumentException().isThrownBy(() -> EmailPatternTemplate.compile("info"))
+                .withMessageContaining("no placeholder");
+        assertThatIllegalArgumentException().isThrownBy(() -> EmailPatternTemplate.compile(""))
+                .withMessageContaining("no placeholder");
+        assertThatIllegalArgumentException().isThrownBy(() -> EmailPatternTemplate.compile("first}.{last}"))
+                .withMessageContaining("Malformed");
+        assertThatIllegalArgumentException().isThrownBy(() -> EmailPatternTemplate.compile("{first}@example.com"))
+                .withMessageContaining("Malformed");
+    }
+
+    private String localPart(String template, NormalizedName name) {
+        StringBuilder out = new StringBuilder();
+        assertThat(EmailPatternTemplate.compile(template).appendLocalPart(out, name)).isTrue();
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GreylistRetrySchedulerTests {
+
+    private final GreylistRetryScheduler scheduler = scheduler(5);
+
+    @Test
+    void backsOffExponentially() {
+        assertThat(scheduler.nextRetry(0)).contains(Duration.ofMinutes(2));
+        assertThat(scheduler.nextRetry(1)).contains(Duration.ofMinutes(4));
+        assertThat(scheduler.nextRetry(2)).contains(Duration.ofMinutes(8));
+    }
+
+    @Test
+    void capsDelayAtMaxDelay() {
+        assertThat(scheduler.nextRetry(3)).contains(Duration.ofMinutes(15));
+        assertThat(scheduler.nextRetry(4)).contains(Duration.ofMinutes(15));
+    }
+
+    @Test
+    void stopsAfterMaxAttempts() {
+        assertThat(scheduler.nextRetry(5)).isEmpty();
+        assertThat(scheduler.nextRetry(6)).isEmpty();
+        assertThat(scheduler(0).nextRetry(0)).isEmpty();
+    }
+
+    private static GreylistRetryScheduler scheduler(int maxAttempts) {
+        EmailProperties.Greylisting greylisting = new EmailProperties.Greylisting();
+        greylisting.setMaxAttempts(maxAttempts);
+        greylisting.setInitialDelay(Duration.ofMinutes(2));
+        greylisting.setMultiplier(2);
+        greylisting.setMaxDelay(Duration.ofMinutes(15));
+        EmailProperties emailProperties = new EmailProperties();
+        emailProperties.setGreylisting(greylisting);
+        return new GreylistRetryScheduler(emailProperties);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.BatchState;
+import com.orvo.emailgenerator.model.dto.response.BatchStatusResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class LeadBatchServiceTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private LeadBatchService leadBatchService;
+
+    @Test
+    void completesUploadWithoutRows() throws InterruptedException {
+        BatchStatusResponse accepted = leadBatchService.submit(csv("first_name,last_name,company_name,company_domain\n"), 1);
+
+        BatchStatusResponse finished = awaitFinished(accepted);
+
+        assertThat(finished.getState()).isEqualTo(BatchState.COMPLETED);
+        assertThat(finished.getTotalRows()).isZero();
+        assertThat(finished.getProcessedRows()).isZero();
+        assertThat(finished.getFinishedAt()).isNotNull();
+    }
+
+    @Test
+    void completesUploadWithBlankRowsOnly() throws InterruptedException {
+        BatchStatusResponse accepted = leadBatchService.submit(
+                csv("first_name,last_name,company_name,company_domain\n,,,\n\n"), 1);
+
+        BatchStatusResponse finished = awaitFinished(accepted);
+
+        assertThat(finished.getState()).isEqualTo(BatchState.COMPLETED);
+        assertThat(finished.getTotalRows()).isZero();
+    }
+
+    private BatchStatusResponse awaitFinished(BatchStatusResponse accepted) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+
+        while (true) {
+            BatchStatusResponse status = leadBatchService.getStatus(accepted.getBatchId()).orElseThrow();
+            if (status.getState() == BatchState.COMPLETED || status.getState() == BatchState.FAILED
+                    || System.nanoTime() > deadline) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "leads.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.model.LeadStatus;
+import com.orvo.emailgenerator.model.SmtpReply;
+import com.orvo.emailgenerator.model.entity.Lead;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class LeadServiceTests {
+
+    private static final SmtpReply REJECTED = new SmtpReply(550, "550 5.1.1 User unknown");
+    private static final SmtpReply ACCEPTED = new SmtpReply(250, "250 2.1.5 Ok");
+
+    @MockitoBean
+    private DnsLookupService dnsLookupService;
+
+    @MockitoBean
+    private SmtpSessionFactory smtpSessionFactory;
+
+    @Autowired
+    private LeadService leadService;
+
+    @Autowired
+    private MailHostCircuitBreaker mailHostCircuitBreaker;
+
+    @Autowired
+    private EmailProperties emailProperties;
+
+    @Test
+    void failsOverWhenTheCircuitOpensMidSession() throws Exception {
+        String domain = domain();
+        mailServers(domain, this::failingAfterCatchAllProbe, host -> email -> ACCEPTED);
+
+        Lead lead = generateLead(domain, true);
+
+        assertThat(lead.getStatus()).isEqualTo(LeadStatus.EMAIL_CREATED);
+        assertThat(lead.getGeneratedEmail()).endsWith("@" + domain);
+    }
+
+    @Test
+    void defersLeadWhenEveryMailServerStopsAnswering() throws Exception {
+        String domain = domain();
+        mailServers(domain, this::failingAfterCatchAllProbe, this::failingAfterCatchAllProbe);
+
+        Lead lead = generateLead(domain, true);
+
+        assertThat(lead.getStatus()).isEqualTo(LeadStatus.VERIFICATION_PENDING);
+        assertThat(lead.getGeneratedEmail()).isNull();
+    }
+
+    @Test
+    void givesUpOnLastRetryWhenEveryMailServerStopsAnswering() throws Exception {
+        String domain = domain();
+        mailServers(domain, this::failingAfterCatchAllProbe, this::failingAfterCatchAllProbe);
+
+        Lead lead = generateLead(domain, false);
+
+        assertThat(lead.getStatus()).isEqualTo(LeadStatus.PROCESSING_ERROR);
+    }
+
+    private Lead generateLead(String domain, boolean deferrable) {
+        List<Lead> leads = leadService.generateLeads(UUID.randomUUID(), 1,
+                List.<String[]>of(new String[]{"Jane", "Doe", "Example", domain}), deferrable);
+        assertThat(leads).hasSize(1);
+        return leads.getFirst();
+    }
+
+    private String domain() {
+        return "d" + UUID.randomUUID().toString().replace("-", "") + ".test";
+    }
+
+    /**
+     * Resolves the domain to two mail servers, answering as the given replies of each.
+     */
+    @SafeVarargs
+    private void mailServers(String domain, Function<String, Function<String, SmtpReply>>... servers) throws Exception {
+        List<String> hosts = List.of("mx1." + domain, "mx2." + domain);
+        when(dnsLookupService.getMailServers(domain)).thenReturn(hosts);
+
+        for (int i = 0; i < hosts.size(); i++) {
+            String host = hosts.get(i);
+            Function<String, SmtpReply> replies = servers[i].apply(host);
+            when(smtpSessionFactory.open(eq(host), any()))
+                    .thenAnswer(invocation -> new ScriptedSmtpSession(host, invocation.getArgument(1), replies));
+        }
+    }
+
+    /**
+     * Rejects the catch-all probe, then loses the connection often enough to open the host's circuit.
+     */
+    private Function<String, SmtpReply> failingAfterCatchAllProbe(String host) {
+        return email -> {
+            if (email.startsWith("orvo-probe-")) {
+                return REJECTED;
+            }
+            for (int i = 0; i < emailProperties.getCircuitBreaker().getFailureThreshold(); i++) {
+                mailHostCircuitBreaker.recordFailure(host);
+            }
+            return SmtpReply.noReply("Circuit open for " + host);
+        };
+    }
+
+    private static class ScriptedSmtpSession implements SmtpSession {
+
+        private final String host;
+        private final MailHostLimiter.HostPermit permit;
+        private final Function<String, SmtpReply> replies;
+
+        ScriptedSmtpSession(String host, MailHostLimiter.HostPermit permit, Function<String, SmtpReply> replies) {
+            this.host = host;
+            this.permit = permit;
+            this.replies = replies;
+        }
+
+        @Override
+        public String getHost() {
+            return host;
+        }
+
+        @Override
+        public SmtpReply verify(String email) {
+            return replies.apply(email);
+        }
+
+        @Override
+        public void close() {
+            permit.close();
+        }
+
+    }
+
+}
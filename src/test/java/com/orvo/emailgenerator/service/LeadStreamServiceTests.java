@@ -0,0 +1,174 @@
+package com.orvo.emailgenerator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.orvo.emailgenerator.config.property.LeadStreamProperties;
+import com.orvo.emailgenerator.model.BatchState;
+import com.orvo.emailgenerator.model.StreamFormat;
+import com.orvo.emailgenerator.model.dto.response.LeadPageResponse;
+import com.orvo.emailgenerator.model.dto.response.LeadResponseDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LeadStreamServiceTests {
+
+    private static final UUID BATCH_ID = UUID.randomUUID();
+    private static final int PAGE_SIZE = 2;
+
+    private final LeadResultService leadResultService = mock(LeadResultService.class);
+    private final LeadBatchStore leadBatchStore = mock(LeadBatchStore.class);
+    private final LeadStreamProperties properties = properties();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LeadStreamService leadStreamService =
+            new LeadStreamService(leadResultService, leadBatchStore, properties, objectMapper);
+
+    @Test
+    void resumesAfterTheLastEventId() throws Exception {
+        when(leadBatchStore.findState(BATCH_ID)).thenReturn(Optional.of(BatchState.COMPLETED));
+        when(leadResultService.getLeads(BATCH_ID, 2, PAGE_SIZE)).thenReturn(page(4L, 3, 4));
+        when(leadResultService.getLeads(BATCH_ID, 4, PAGE_SIZE)).thenReturn(page(null, 5));
+
+        String body = stream(2, StreamFormat.SSE);
+
+        assertThat(body).isEqualTo(event(3) + event(4) + event(5) + "event: end\ndata: {\"state\":\"COMPLETED\"}\n\n");
+        var pages = inOrder(leadResultService);
+        pages.verify(leadResultService).getLeads(BATCH_ID, 2, PAGE_SIZE);
+        pages.verify(leadResultService).getLeads(BATCH_ID, 4, PAGE_SIZE);
+    }
+
+    @Test
+    void streamsLeadsStoredUntilTheBatchIsFinished() throws Exception {
+        when(leadBatchStore.findState(BATCH_ID)).thenReturn(Optional.of(BatchState.RUNNING), Optional.of(BatchState.RUNNING),
+                Optional.of(BatchState.FAILED));
+        when(leadResultService.getLeads(BATCH_ID, 0, PAGE_SIZE)).thenReturn(page(null), page(null, 1));
+        when(leadResultService.getLeads(BATCH_ID, 1, PAGE_SIZE)).thenReturn(page(null));
+
+        String body = stream(0, StreamFormat.SSE);
+
+        assertThat(body).isEqualTo(event(1) + "event: end\ndata: {\"state\":\"FAILED\"}\n\n");
+    }
+
+    @Test
+    void wakesUpWhenTheBatchIsUpdated() throws Exception {
+        properties.setPollInterval(Duration.ofMinutes(1));
+        when(leadBatchStore.findState(BATCH_ID)).thenReturn(Optional.of(BatchState.RUNNING), Optional.of(BatchState.COMPLETED));
+        when(leadResultService.getLeads(BATCH_ID, 0, PAGE_SIZE)).thenReturn(page(null), page(null, 1));
+
+        CompletableFuture<String> body = CompletableFuture.supplyAsync(() -> streamUnchecked(StreamFormat.NDJSON));
+        verify(leadResultService, timeout(1000)).getLeads(BATCH_ID, 0, PAGE_SIZE);
+        leadStreamService.batchUpdated(BATCH_ID);
+
+        assertThat(body.get(1, TimeUnit.SECONDS)).isEqualTo(json(1) + "\n");
+    }
+
+    @Test
+    void endsStreamOfUnknownBatch() throws Exception {
+        when(leadBatchStore.findState(BATCH_ID)).thenReturn(Optional.empty());
+        when(leadResultService.getLeads(BATCH_ID, 0, PAGE_SIZE)).thenReturn(page(null));
+
+        assertThat(stream(0, StreamFormat.SSE)).isEqualTo("event: end\ndata: {\"state\":\"UNKNOWN\"}\n\n");
+    }
+
+    @Test
+    void writesOneLeadPerLineAsNdjson() throws Exception {
+        when(leadBatchStore.findState(BATCH_ID)).thenReturn(Optional.of(BatchState.COMPLETED));
+        when(leadResultService.getLeads(BATCH_ID, 0, PAGE_SIZE)).thenReturn(page(null, 1, 2));
+
+        assertThat(stream(0, StreamFormat.NDJSON)).isEqualTo(json(1) + "\n" + json(2) + "\n");
+    }
+
+    @Test
+    void closesStreamAfterMaxDuration() throws Exception {
+        properties.setMaxDuration(Duration.ofMillis(50));
+        when(leadBatchStore.findState(BATCH_ID)).thenReturn(Optional.of(BatchState.RUNNING));
+        when(leadResultService.getLeads(BATCH_ID, 0, PAGE_SIZE)).thenReturn(page(null));
+
+        assertThat(stream(0, StreamFormat.SSE)).doesNotContain("event: end");
+    }
+
+    @Test
+    void rejectsPageSizeAboveTheResultPageLimit() {
+        ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+                .withUserConfiguration(LeadStreamConfiguration.class);
+
+        contextRunner.withPropertyValues("orvo.lead-stream.page-size=" + LeadResultService.MAX_PAGE_SIZE)
+                .run(context -> assertThat(context).hasNotFailed());
+        contextRunner.withPropertyValues("orvo.lead-stream.page-size=" + (LeadResultService.MAX_PAGE_SIZE + 1))
+                .run(context -> assertThat(context).hasFailed());
+        contextRunner.withPropertyValues("orvo.lead-stream.page-size=0")
+                .run(context -> assertThat(context).hasFailed());
+    }
+
+    private String stream(long afterId, StreamFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        leadStreamService.stream(BATCH_ID, afterId, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String streamUnchecked(StreamFormat format) {
+        try {
+            return stream(0, format);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String event(long id) throws JsonProcessingException {
+        return "id: " + id + "\nevent: lead\ndata: " + json(id) + "\n\n";
+    }
+
+    private String json(long id) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(lead(id));
+    }
+
+    private static LeadPageResponse page(Long nextAfterId, long... ids) {
+        List<LeadResponseDto> leads = Arrays.stream(ids).mapToObj(LeadStreamServiceTests::lead).toList();
+        return LeadPageResponse.builder().leads(leads).nextAfterId(nextAfterId).build();
+    }
+
+    private static LeadResponseDto lead(long id) {
+        return LeadResponseDto.builder()
+                .id(id)
+                .firstName("Jane")
+                .lastName("Doe")
+                .companyDomain("example.com")
+                .generatedEmail("jane.doe@example.com")
+                .status("EMAIL_CREATED")
+                .build();
+    }
+
+    private static LeadStreamProperties properties() {
+        LeadStreamProperties properties = new LeadStreamProperties();
+        properties.setPageSize(PAGE_SIZE);
+        properties.setPollInterval(Duration.ofMillis(10));
+        properties.setHeartbeatInterval(Duration.ofSeconds(15));
+        properties.setMaxDuration(Duration.ofSeconds(5));
+        return properties;
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(LeadStreamProperties.class)
+    static class LeadStreamConfiguration {
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailHostCircuitBreakerTests {
+
+    private static final String HOST = "mx.example.com";
+
+    private final EmailProperties.CircuitBreaker properties = new EmailProperties.CircuitBreaker();
+    private final MailHostCircuitBreaker circuitBreaker = circuitBreaker(3, Duration.ofHours(1));
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        circuitBreaker.recordFailure(HOST);
+        circuitBreaker.recordFailure(HOST);
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+
+        circuitBreaker.recordFailure(HOST);
+        assertThat(circuitBreaker.allowRequest(HOST)).isFalse();
+    }
+
+    @Test
+    void resetsFailuresOnSuccess() {
+        circuitBreaker.recordFailure(HOST);
+        circuitBreaker.recordFailure(HOST);
+        circuitBreaker.recordSuccess(HOST);
+        circuitBreaker.recordFailure(HOST);
+        circuitBreaker.recordFailure(HOST);
+
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+    }
+
+    @Test
+    void tracksHostsSeparatelyIgnoringCase() {
+        open("MX.Example.com");
+
+        assertThat(circuitBreaker.allowRequest(HOST)).isFalse();
+        assertThat(circuitBreaker.allowRequest("mx2.example.com")).isTrue();
+    }
+
+    @Test
+    void letsASingleTrialThroughOnceOpenDurationPassed() {
+        properties.setOpenDuration(Duration.ZERO);
+        open(HOST);
+
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+        assertThat(circuitBreaker.allowRequest(HOST)).isFalse();
+    }
+
+    @Test
+    void closesWhenTheTrialSucceeds() {
+        properties.setOpenDuration(Duration.ZERO);
+        open(HOST);
+        circuitBreaker.allowRequest(HOST);
+
+        circuitBreaker.recordSuccess(HOST);
+
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+        assertThat(circuitBreaker.allowRequest(HOST)).isTrue();
+    }
+
+    @Test
+    void reopensWhenTheTrialFails() {
+        properties.setOpenDuration(Duration.ZERO);
+        open(HOST);
+        circuitBreaker.allowRequest(HOST);
+        properties.setOpenDuration(Duration.ofHours(1));
+
+        circuitBreaker.recordFailure(HOST);
+
+        assertThat(circuitBreaker.allowRequest(HOST)).isFalse();
+    }
+
+    private void open(String host) {
+        for (int i = 0; i < properties.getFailureThreshold(); i++) {
+            circuitBreaker.recordFailure(host);
+        }
+    }
+
+    private MailHostCircuitBreaker circuitBreaker(int failureThreshold, Duration openDuration) {
+        properties.setFailureThreshold(failureThreshold);
+        properties.setOpenDuration(openDuration);
+        EmailProperties emailProperties = new EmailProperties();
+        emailProperties.setCircuitBreaker(properties);
+        return new MailHostCircuitBreaker(emailProperties);
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.repository.MailHostRateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MailHostLimiterTests {
+
+    private static final String HOST = "mx.example.com";
+
+    /**
+     * 10 commands per second: a command beyond the burst waits 100 ms for its token.
+     */
+    private static final Duration TOKEN_INTERVAL = Duration.ofMillis(100);
+    private static final Duration NO_WAIT = Duration.ofMillis(50);
+
+    private final MailHostRateRepository mailHostRateRepository = mock(MailHostRateRepository.class);
+
+    @Test
+    void letsBurstThroughThenPaces() throws InterruptedException {
+        MailHostLimiter.HostPermit permit = limiter(false).acquire(HOST);
+
+        assertThat(timeAwaitRate(permit, 2)).isLessThan(NO_WAIT);
+        assertThat(timeAwaitRate(permit, 1)).isGreaterThanOrEqualTo(TOKEN_INTERVAL.minusMillis(20));
+        assertThat(timeAwaitRate(permit, 2)).isGreaterThanOrEqualTo(TOKEN_INTERVAL.multipliedBy(2).minusMillis(20));
+    }
+
+    @Test
+    void refillsUpToTheBurst() throws InterruptedException {
+        MailHostLimiter.HostPermit permit = limiter(false).acquire(HOST);
+        timeAwaitRate(permit, 2);
+
+        Thread.sleep(TOKEN_INTERVAL.multipliedBy(5));
+
+        assertThat(timeAwaitRate(permit, 2)).isLessThan(NO_WAIT);
+        assertThat(timeAwaitRate(permit, 1)).isGreaterThanOrEqualTo(TOKEN_INTERVAL.minusMillis(20));
+    }
+
+    @Test
+    void sharesTheBucketOfAHostBetweenSessions() throws InterruptedException {
+        MailHostLimiter limiter = limiter(false);
+        MailHostLimiter.HostPermit first = limiter.acquire(HOST);
+        MailHostLimiter.HostPermit second = limiter.acquire(HOST.toUpperCase());
+
+        timeAwaitRate(first, 2);
+
+        assertThat(timeAwaitRate(second, 1)).isGreaterThanOrEqualTo(TOKEN_INTERVAL.minusMillis(20));
+        assertThat(timeAwaitRate(limiter.acquire("mx2.example.com"), 2)).isLessThan(NO_WAIT);
+    }
+
+    @Test
+    void waitsForAFreeSessionSlot() throws Exception {
+        MailHostLimiter limiter = limiter(false);
+        MailHostLimiter.HostPermit first = limiter.acquire(HOST);
+        limiter.acquire(HOST).close();
+        MailHostLimiter.HostPermit second = limiter.acquire(HOST);
+
+        CompletableFuture<MailHostLimiter.HostPermit> third = CompletableFuture.supplyAsync(() -> acquire(limiter));
+        Thread.sleep(NO_WAIT);
+        assertThat(third).isNotDone();
+
+        first.close();
+        first.close();
+        assertThat(third.get(1, TimeUnit.SECONDS)).isNotNull();
+        CompletableFuture<MailHostLimiter.HostPermit> fourth = CompletableFuture.supplyAsync(() -> acquire(limiter));
+        Thread.sleep(NO_WAIT);
+        assertThat(fourth).isNotDone();
+
+        second.close();
+        assertThat(fourth.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void waitsForTheDebtOfTheSharedBucket() throws InterruptedException {
+        when(mailHostRateRepository.takeToken(eq(HOST), eq(10.0), eq(2))).thenReturn(0.0, -1.5);
+        MailHostLimiter.HostPermit permit = limiter(true).acquire(HOST);
+
+        assertThat(timeAwaitRate(permit, 1)).isLessThan(NO_WAIT);
+        assertThat(timeAwaitRate(permit, 1)).isGreaterThanOrEqualTo(TOKEN_INTERVAL.multipliedBy(3).dividedBy(2).minusMillis(20));
+    }
+
+    @Test
+    void pacesLocallyWhileTheSharedBucketIsUnavailable() throws InterruptedException {
+        when(mailHostRateRepository.takeToken(anyString(), anyDouble(), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("Database down"));
+        MailHostLimiter limiter = limiter(true);
+        // The first failure is slow to log, long enough for the bucket to refill.
+        limiter.acquire("mx2.example.com").awaitRate();
+        MailHostLimiter.HostPermit permit = limiter.acquire(HOST);
+
+        // Beyond the burst of 2, every command waits for its token.
+        assertThat(timeAwaitRate(permit, 4)).isGreaterThanOrEqualTo(TOKEN_INTERVAL.multipliedBy(2).minusMillis(20));
+    }
+
+    private MailHostLimiter limiter(boolean distributed) {
+        EmailProperties.HostLimits hostLimits = new EmailProperties.HostLimits();
+        hostLimits.setMaxConcurrentSessions(2);
+        hostLimits.setCommandsPerSecond(10);
+        hostLimits.setBurst(2);
+        hostLimits.setDistributed(distributed);
+        EmailProperties emailProperties = new EmailProperties();
+        emailProperties.setHostLimits(hostLimits);
+        return new MailHostLimiter(emailProperties, mailHostRateRepository);
+    }
+
+    private static Duration timeAwaitRate(MailHostLimiter.HostPermit permit, int commands) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < commands; i++) {
+            permit.awaitRate();
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private static MailHostLimiter.HostPermit acquire(MailHostLimiter limiter) {
+        try {
+            return limiter.acquire(HOST);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
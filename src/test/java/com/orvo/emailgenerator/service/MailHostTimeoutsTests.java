@@ -0,0 +1,128 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.EmailProperties;
+import com.orvo.emailgenerator.service.MailHostTimeouts.Phase;
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailHostTimeoutsTests {
+
+    private static final String HOST = "mx.example.com";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REPLY_TIMEOUT = Duration.ofSeconds(10);
+
+    private final EmailProperties.Smtp smtp = smtp();
+    private final MailHostTimeouts timeouts = timeouts();
+
+    @Test
+    void usesFixedTimeoutsWithoutHistory() {
+        assertThat(timeouts.getTimeout(HOST, Phase.CONNECT)).isEqualTo(CONNECT_TIMEOUT);
+        assertThat(timeouts.getTimeout(HOST, Phase.BANNER)).isEqualTo(REPLY_TIMEOUT);
+        assertThat(timeouts.getTimeout(HOST, Phase.MAIL_FROM)).isEqualTo(REPLY_TIMEOUT);
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(REPLY_TIMEOUT);
+    }
+
+    @Test
+    void usesFixedTimeoutUntilEnoughSamples() {
+        record(HOST, Phase.RCPT_TO, Duration.ofMillis(200), 19);
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(REPLY_TIMEOUT);
+
+        record(HOST, Phase.RCPT_TO, Duration.ofMillis(200), 1);
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(Duration.ofMillis(400));
+    }
+
+    @Test
+    void timesOutAfterPercentileTimesHeadroom() {
+        for (int millis = 1; millis <= 100; millis++) {
+            timeouts.record(HOST, Phase.RCPT_TO, Duration.ofMillis(millis * 10L).toNanos());
+        }
+
+        // The 99th of 100 sorted samples is 990 ms.
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(Duration.ofMillis(1980));
+    }
+
+    @Test
+    void clampsToMinTimeout() {
+        record(HOST, Phase.MAIL_FROM, Duration.ofMillis(10), 20);
+
+        assertThat(timeouts.getTimeout(HOST, Phase.MAIL_FROM)).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void clampsToFixedTimeout() {
+        record(HOST, Phase.CONNECT, Duration.ofSeconds(4), 20);
+        record(HOST, Phase.BANNER, Duration.ofSeconds(20), 20);
+
+        assertThat(timeouts.getTimeout(HOST, Phase.CONNECT)).isEqualTo(CONNECT_TIMEOUT);
+        assertThat(timeouts.getTimeout(HOST, Phase.BANNER)).isEqualTo(REPLY_TIMEOUT);
+    }
+
+    @Test
+    void forgetsSamplesOutsideTheWindow() {
+        record(HOST, Phase.RCPT_TO, Duration.ofSeconds(3), 100);
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(Duration.ofSeconds(6));
+
+        record(HOST, Phase.RCPT_TO, Duration.ofMillis(300), 100);
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(Duration.ofMillis(600));
+    }
+
+    @Test
+    void keepsHostsAndPhasesApart() {
+        record("MX.Example.com", Phase.RCPT_TO, Duration.ofMillis(200), 20);
+
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(Duration.ofMillis(400));
+        assertThat(timeouts.getTimeout(HOST, Phase.MAIL_FROM)).isEqualTo(REPLY_TIMEOUT);
+        assertThat(timeouts.getTimeout("mx2.example.com", Phase.RCPT_TO)).isEqualTo(REPLY_TIMEOUT);
+    }
+
+    @Test
+    void ignoresSamplesWhenDisabled() {
+        smtp.getAdaptiveTimeouts().setEnabled(false);
+        record(HOST, Phase.RCPT_TO, Duration.ofMillis(200), 20);
+
+        assertThat(timeouts.getTimeout(HOST, Phase.RCPT_TO)).isEqualTo(REPLY_TIMEOUT);
+    }
+
+    @Test
+    void recognizesTimeoutsAmongCauses() {
+        assertThat(MailHostTimeouts.isTimeout(new MessagingException("Read timed out",
+                new IOException(new SocketTimeoutException())))).isTrue();
+        assertThat(MailHostTimeouts.isTimeout(new MessagingException("Connection reset", new IOException()))).isFalse();
+    }
+
+    private void record(String host, Phase phase, Duration latency, int times) {
+        for (int i = 0; i < times; i++) {
+            timeouts.record(host, phase, latency.toNanos());
+        }
+    }
+
+    private MailHostTimeouts timeouts() {
+        EmailProperties emailProperties = new EmailProperties();
+        emailProperties.setSmtp(smtp);
+        return new MailHostTimeouts(emailProperties);
+    }
+
+    private static EmailProperties.Smtp smtp() {
+        EmailProperties.Smtp smtp = new EmailProperties.Smtp();
+        smtp.setConnectiontimeout((int) CONNECT_TIMEOUT.toMillis());
+        smtp.setTimeout((int) REPLY_TIMEOUT.toMillis());
+        smtp.setWritetimeout(2000);
+
+        EmailProperties.Smtp.AdaptiveTimeouts adaptiveTimeouts = new EmailProperties.Smtp.AdaptiveTimeouts();
+        adaptiveTimeouts.setEnabled(true);
+        adaptiveTimeouts.setPercentile(0.99);
+        adaptiveTimeouts.setHeadroom(2);
+        adaptiveTimeouts.setMinTimeout(Duration.ofMillis(100));
+        adaptiveTimeouts.setWindow(100);
+        adaptiveTimeouts.setMinSamples(20);
+        smtp.setAdaptiveTimeouts(adaptiveTimeouts);
+        return smtp;
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.model.SmtpReply;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NioSmtpConnectionTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private NioSmtpEventLoop loop;
+    private ServerSocket server;
+    private Socket client;
+    private BufferedReader in;
+    private OutputStream out;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        loop = new NioSmtpEventLoop("smtp-test");
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException, InterruptedException {
+        if (client != null) {
+            client.close();
+        }
+        server.close();
+        loop.close();
+    }
+
+    @Test
+    void collectsMultilineGreeting() throws Exception {
+        NioSmtpConnection connection = new NioSmtpConnection(loop, "localhost", TIMEOUT);
+        CompletableFuture<List<SmtpReply>> greeting = connect(connection, TIMEOUT);
+
+        reply("220-mx.example.com ESMTP\r\n220-No UCE\r\n220 ready\r\n");
+
+        List<SmtpReply> replies = await(greeting);
+        assertThat(replies).hasSize(1);
+        assertThat(replies.getFirst().getCode()).isEqualTo(220);
+        assertThat(replies.getFirst().getMessage()).isEqualTo("220-mx.example.com ESMTP\n220-No UCE\n220 ready");
+    }
+
+    @Test
+    void joinsReplyLinesSplitAcrossReads() throws Exception {
+        NioSmtpConnection connection = greeted();
+        CompletableFuture<List<SmtpReply>> ehlo = connection.send(List.of("EHLO orvo.test"), TIMEOUT);
+        assertThat(in.readLine()).isEqualTo("EHLO orvo.test");
+
+        reply("250-mx.exa");
+        Thread.sleep(50);
+        reply("mple.com\r\n250-PIPEL");
+        Thread.sleep(50);
+        reply("INING\r\n250 SIZE 10240000\n");
+
+        List<SmtpReply> replies = await(ehlo);
+        assertThat(replies).extracting(SmtpReply::getCode).containsExactly(250);
+        assertThat(replies.getFirst().getMessage()).isEqualTo("250-mx.example.com\n250-PIPELINING\n250 SIZE 10240000");
+    }
+
+    @Test
+    void matchesPipelinedRepliesToCommands() throws Exception {
+        NioSmtpConnection connection = greeted();
+        CompletableFuture<List<SmtpReply>> transaction = connection.send(
+                List.of("MAIL FROM:<>", "RCPT TO:<jane@example.com>", "RCPT TO:<john@example.com>"), TIMEOUT);
+
+        assertThat(in.readLine()).isEqualTo("MAIL FROM:<>");
+        assertThat(in.readLine()).isEqualTo("RCPT TO:<jane@example.com>");
+        assertThat(in.readLine()).isEqualTo("RCPT TO:<john@example.com>");
+        reply("250 2.1.0 Ok\r\n250 2.1.5 Ok\r\n550-5.1.1 No such user\r\n550 5.1.1 Try again\r\n");
+
+        List<SmtpReply> replies = await(transaction);
+        assertThat(replies).extracting(SmtpReply::getCode).containsExactly(250, 250, 550);
+        assertThat(replies.getLast().getMessage()).isEqualTo("550-5.1.1 No such user\n550 5.1.1 Try again");
+    }
+
+    @Test
+    void runsExchangesInSubmissionOrder() throws Exception {
+        NioSmtpConnection connection = greeted();
+        CompletableFuture<List<SmtpReply>> first = connection.send(List.of("RSET"), TIMEOUT);
+        CompletableFuture<List<SmtpReply>> second = connection.send(List.of("NOOP", "NOOP"), TIMEOUT);
+
+        assertThat(in.readLine()).isEqualTo("RSET");
+        reply("250 reset\r\n");
+        assertThat(in.readLine()).isEqualTo("NOOP");
+        assertThat(in.readLine()).isEqualTo("NOOP");
+        reply("250 first\r\n250 second\r\n");
+
+        assertThat(await(first)).extracting(SmtpReply::getMessage).containsExactly("250 reset");
+        assertThat(await(second)).extracting(SmtpReply::getMessage).containsExactly("250 first", "250 second");
+    }
+
+    @Test
+    void failsOnMalformedReply() throws Exception {
+        NioSmtpConnection connection = greeted();
+        CompletableFuture<List<SmtpReply>> ehlo = connection.send(List.of("EHLO orvo.test"), TIMEOUT);
+        CompletableFuture<List<SmtpReply>> queued = connection.send(List.of("NOOP"), TIMEOUT);
+
+        reply("hello\r\n");
+
+        assertThatThrownBy(() -> await(ehlo)).hasCauseInstanceOf(ProtocolException.class);
+        assertThatThrownBy(() -> await(queued)).hasCauseInstanceOf(ProtocolException.class);
+    }
+
+    @Test
+    void failsWhenTheReplyIsLate() throws Exception {
+        NioSmtpConnection connection = new NioSmtpConnection(loop, "localhost", TIMEOUT);
+        CompletableFuture<List<SmtpReply>> greeting = connect(connection, Duration.ofMillis(200));
+
+        assertThatThrownBy(() -> await(greeting)).hasCauseInstanceOf(SocketTimeoutException.class);
+    }
+
+    private NioSmtpConnection greeted() throws Exception {
+        NioSmtpConnection connection = new NioSmtpConnection(loop, "localhost", TIMEOUT);
+        CompletableFuture<List<SmtpReply>> greeting = connect(connection, TIMEOUT);
+        reply("220 ready\r\n");
+        await(greeting);
+        return connection;
+    }
+
+    private CompletableFuture<List<SmtpReply>> connect(NioSmtpConnection connection, Duration bannerTimeout)
+            throws IOException {
+        CompletableFuture<List<SmtpReply>> greeting = connection.connect(
+                new InetSocketAddress(server.getInetAddress(), server.getLocalPort()), TIMEOUT, bannerTimeout);
+        client = server.accept();
+        in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+        out = client.getOutputStream();
+        return greeting;
+    }
+
+    private void reply(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private List<SmtpReply> await(CompletableFuture<List<SmtpReply>> replies)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return replies.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+}
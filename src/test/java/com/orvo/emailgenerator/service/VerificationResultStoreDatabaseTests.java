@@ -0,0 +1,101 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.VerificationStoreProperties;
+import com.orvo.emailgenerator.model.EmailVerdict;
+import com.orvo.emailgenerator.model.SmtpReply;
+import com.orvo.emailgenerator.repository.EmailVerificationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class VerificationResultStoreDatabaseTests {
+
+    private static final String MX_HOST = "mx.example.com";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final String email = "jane." + UUID.randomUUID() + "@example.test";
+    private final List<VerificationResultStore> stores = new ArrayList<>();
+
+    @Autowired
+    private EmailVerificationRepository emailVerificationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(VerificationResultStore::close);
+        jdbcTemplate.update("delete from email_verifications where email = ?", email);
+    }
+
+    @Test
+    void findsVerdictsRecordedEarlier() {
+        store().record(Map.of(email, new SmtpReply(550, "550 User unknown")), MX_HOST);
+
+        VerificationResultStore restarted = loadedStore();
+
+        assertThat(restarted.findVerdicts(List.of(email))).containsEntry(email, EmailVerdict.REJECTED);
+        assertThat(restarted.findVerdicts(List.of("nobody." + email))).isEmpty();
+    }
+
+    @Test
+    void replacesEarlierVerdicts() {
+        VerificationResultStore store = store();
+        store.record(Map.of(email, new SmtpReply(550, "550 User unknown")), MX_HOST);
+        store.record(Map.of(email, new SmtpReply(250, "250 Ok")), MX_HOST);
+
+        assertThat(loadedStore().findVerdicts(List.of(email))).containsEntry(email, EmailVerdict.ACCEPTED);
+    }
+
+    @Test
+    void findsVerdictsRecordedByAnotherInstance() throws InterruptedException {
+        VerificationResultStore other = store();
+        VerificationResultStore store = loadedStore();
+        assertThat(store.findVerdicts(List.of(email))).isEmpty();
+
+        other.record(Map.of(email, new SmtpReply(250, "250 Ok")), MX_HOST);
+
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (store.findVerdicts(List.of(email)).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(store.findVerdicts(List.of(email))).containsEntry(email, EmailVerdict.ACCEPTED);
+    }
+
+    private VerificationResultStore loadedStore() {
+        VerificationResultStore store = store();
+        transactionTemplate.executeWithoutResult(status -> store.loadFilter());
+        return store;
+    }
+
+    private VerificationResultStore store() {
+        VerificationStoreProperties properties = new VerificationStoreProperties();
+        properties.setEnabled(true);
+        properties.setFreshnessTtl(Duration.ofDays(30));
+        properties.setRecentSize(1000);
+        properties.setExpectedEmails(10_000);
+        properties.setFalsePositiveRate(0.0001);
+        properties.setFilterRefreshInterval(Duration.ofMillis(50));
+        properties.setFilterRefreshOverlap(Duration.ofMinutes(1));
+
+        VerificationResultStore store = new VerificationResultStore(properties, emailVerificationRepository);
+        stores.add(store);
+        return store;
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.VerificationStoreProperties;
+import com.orvo.emailgenerator.model.EmailVerdict;
+import com.orvo.emailgenerator.model.SmtpReply;
+import com.orvo.emailgenerator.model.entity.EmailVerification;
+import com.orvo.emailgenerator.repository.EmailVerificationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VerificationResultStoreTests {
+
+    private static final String MX_HOST = "mx.example.com";
+    private static final Duration FRESHNESS_TTL = Duration.ofDays(30);
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final VerificationStoreProperties properties = properties();
+    private final EmailVerificationRepository repository = mock(EmailVerificationRepository.class);
+    private final VerificationResultStore store = new VerificationResultStore(properties, repository);
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordsOnlyDefiniteReplies() {
+        Map<String, SmtpReply> replies = new LinkedHashMap<>();
+        replies.put("Jane@Example.com ", new SmtpReply(250, "250 Ok"));
+        replies.put("john@example.com", new SmtpReply(550, "550 User unknown"));
+        replies.put("greylisted@example.com", new SmtpReply(450, "450 Try again later"));
+        replies.put("dropped@example.com", SmtpReply.noReply("Connection reset"));
+
+        store.record(replies, MX_HOST);
+
+        ArgumentCaptor<Collection<EmailVerification>> stored = ArgumentCaptor.forClass(Collection.class);
+        verify(repository).upsertAll(stored.capture());
+        assertThat(stored.getValue())
+                .extracting(EmailVerification::getEmail, EmailVerification::getVerdict, EmailVerification::getSmtpCode,
+                        EmailVerification::getMxHost)
+                .containsExactlyInAnyOrder(
+                        tuple("jane@example.com", EmailVerdict.ACCEPTED, 250, MX_HOST),
+                        tuple("john@example.com", EmailVerdict.REJECTED, 550, MX_HOST));
+    }
+
+    @Test
+    void skipsTheDatabaseWithoutDefiniteReplies() {
+        store.record(Map.of("greylisted@example.com", new SmtpReply(451, "451 Local error")), MX_HOST);
+
+        verify(repository, never()).upsertAll(any());
+    }
+
+    @Test
+    void answersRecordedVerdictsFromMemory() {
+        store.record(Map.of("jane@example.com", new SmtpReply(250, "250 Ok"),
+                "john@example.com", new SmtpReply(550, "550 User unknown")), MX_HOST);
+
+        Map<String, EmailVerdict> verdicts = store.findVerdicts(List.of(" JANE@example.com", "john@example.com"));
+
+        assertThat(verdicts).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "jane@example.com", EmailVerdict.ACCEPTED,
+                "john@example.com", EmailVerdict.REJECTED));
+        verify(repository, never()).findAllById(any());
+    }
+
+    @Test
+    void looksUpEveryMissUntilTheFilterIsLoaded() {
+        when(repository.findAllById(List.of("jane@example.com")))
+                .thenReturn(List.of(verification("jane@example.com", LocalDateTime.now())));
+
+        assertThat(store.findVerdicts(List.of("jane@example.com"))).containsEntry("jane@example.com", EmailVerdict.ACCEPTED);
+    }
+
+    @Test
+    void skipsTheDatabaseForAddressesNeverStored() {
+        when(repository.streamEmailsVerifiedAfter(any())).thenReturn(Stream.of("jane@example.com"));
+        when(repository.findAllById(List.of("jane@example.com")))
+                .thenReturn(List.of(verification("jane@example.com", LocalDateTime.now())));
+        store.loadFilter();
+
+        assertThat(store.findVerdicts(List.of("nobody@example.com"))).isEmpty();
+        verify(repository, never()).findAllById(any());
+
+        assertThat(store.findVerdicts(List.of("jane@example.com"))).containsEntry("jane@example.com", EmailVerdict.ACCEPTED);
+    }
+
+    @Test
+    void ignoresVerdictsOlderThanTheFreshnessTtl() {
+        when(repository.findAllById(List.of("jane@example.com")))
+                .thenReturn(List.of(verification("jane@example.com", LocalDateTime.now().minus(FRESHNESS_TTL).minusHours(1))));
+
+        assertThat(store.findVerdicts(List.of("jane@example.com"))).isEmpty();
+    }
+
+    @Test
+    void refreshesFilterFromBeforeThePreviousRefresh() throws InterruptedException {
+        when(repository.streamEmailsVerifiedAfter(any())).thenReturn(Stream.empty());
+        when(repository.findEmailsVerifiedAfter(any())).thenReturn(List.of("jane@example.com"));
+        when(repository.findAllById(List.of("jane@example.com")))
+                .thenReturn(List.of(verification("jane@example.com", LocalDateTime.now())));
+        LocalDateTime loadedAt = LocalDateTime.now();
+        store.loadFilter();
+
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (store.findVerdicts(List.of("jane@example.com")).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(store.findVerdicts(List.of("jane@example.com"))).containsEntry("jane@example.com", EmailVerdict.ACCEPTED);
+        ArgumentCaptor<LocalDateTime> since = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository, atLeastOnce()).findEmailsVerifiedAfter(since.capture());
+        assertThat(since.getAllValues().getFirst())
+                .isBeforeOrEqualTo(loadedAt.minus(properties.getFilterRefreshOverlap()).plusSeconds(1));
+    }
+
+    @Test
+    void doesNothingWhenDisabled() {
+        properties.setEnabled(false);
+
+        store.record(Map.of("jane@example.com", new SmtpReply(250, "250 Ok")), MX_HOST);
+
+        assertThat(store.findVerdicts(List.of("jane@example.com"))).isEmpty();
+        verify(repository, never()).upsertAll(any());
+        verify(repository, never()).findAllById(any());
+    }
+
+    private static EmailVerification verification(String email, LocalDateTime verifiedAt) {
+        return EmailVerification.builder()
+                .email(email)
+                .smtpCode(250)
+                .verdict(EmailVerdict.ACCEPTED)
+                .mxHost(MX_HOST)
+                .verifiedAt(verifiedAt)
+                .build();
+    }
+
+    private static VerificationStoreProperties properties() {
+        VerificationStoreProperties properties = new VerificationStoreProperties();
+        properties.setEnabled(true);
+        properties.setFreshnessTtl(FRESHNESS_TTL);
+        properties.setRecentSize(1000);
+        properties.setExpectedEmails(10_000);
+        properties.setFalsePositiveRate(0.0001);
+        properties.setFilterRefreshInterval(Duration.ofMillis(50));
+        properties.setFilterRefreshOverlap(Duration.ofMinutes(1));
+        return properties;
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.orvo.emailgenerator.service;
+
+import com.orvo.emailgenerator.config.property.BatchProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerificationSchedulerTests {
+
+    private final ManualExecutor executor = new ManualExecutor();
+    private final List<String> verified = new ArrayList<>();
+
+    @Test
+    void verifiesLaterBatchBeforeTheRestOfALargeOne() {
+        VerificationScheduler scheduler = scheduler(1, 1);
+        UUID large = UUID.randomUUID();
+        UUID small = UUID.randomUUID();
+        for (int i = 0; i < 4; i++) {
+            submit(scheduler, large, 1, 10, "large" + i);
+        }
+        executor.runNext();
+
+        submit(scheduler, small, 1, 10, "small0");
+        executor.runAll();
+
+        assertThat(verified).containsExactly("large0", "large1", "small0", "large2", "large3");
+    }
+
+    @Test
+    void sharesSlotsByWeight() {
+        VerificationScheduler scheduler = scheduler(1, 1);
+        UUID light = UUID.randomUUID();
+        UUID heavy = UUID.randomUUID();
+        // Start tags: light 0 (running), 10, 20; heavy 0, 3, 6, 9, 12, 15, 18, 21.
+        for (int i = 0; i < 3; i++) {
+            submit(scheduler, light, 1, 10, "light" + i);
+        }
+        for (int i = 0; i < 8; i++) {
+            submit(scheduler, heavy, 2, 6, "heavy" + i);
+        }
+        executor.runAll();
+
+        assertThat(verified).containsExactly("light0", "heavy0", "heavy1", "heavy2", "heavy3", "light1",
+                "heavy4", "heavy5", "heavy6", "light2", "heavy7");
+    }
+
+    @Test
+    void capsBatchWhileOthersAreWaiting() {
+        VerificationScheduler scheduler = scheduler(2, 1);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        submit(scheduler, first, 1, 1, "first0");
+        submit(scheduler, second, 1, 100, "second0");
+        for (int i = 0; i < 3; i++) {
+            submit(scheduler, third, 1, 10, "third" + i);
+        }
+        submit(scheduler, second, 1, 10, "second1");
+        executor.runAll();
+
+        // third1 has the lower start tag, but third is at its cap while second waits.
+        assertThat(verified).containsExactly("first0", "second0", "third0", "second1", "third1", "third2");
+    }
+
+    @Test
+    void usesAllSlotsForABatchRunningAlone() {
+        VerificationScheduler scheduler = scheduler(3, 1);
+        UUID batchId = UUID.randomUUID();
+        for (int i = 0; i < 4; i++) {
+            submit(scheduler, batchId, 1, 10, "group" + i);
+        }
+
+        assertThat(executor.pending()).isEqualTo(3);
+        executor.runNext();
+        assertThat(executor.pending()).isEqualTo(3);
+    }
+
+    @Test
+    void completesWithTheResultOfTheTask() {
+        VerificationScheduler scheduler = scheduler(1, 1);
+        CompletableFuture<String> result = scheduler.submit(UUID.randomUUID(), 1, 1, () -> "verified");
+        CompletableFuture<String> failure = scheduler.submit(UUID.randomUUID(), 1, 1, () -> {
+            throw new IllegalStateException("unreachable");
+        });
+        executor.runAll();
+
+        assertThat(result).isCompletedWithValue("verified");
+        assertThat(failure).isCompletedExceptionally();
+    }
+
+    @Test
+    void failsGroupsTheExecutorRejects() {
+        VerificationScheduler scheduler = scheduler(1, 1);
+        executor.shutdown();
+
+        CompletableFuture<String> result = scheduler.submit(UUID.randomUUID(), 1, 1, () -> "verified");
+
+        assertThat(result).isCompletedExceptionally();
+    }
+
+    private VerificationScheduler scheduler(int concurrency, int maxInFlightPerBatch) {
+        BatchProperties batchProperties = new BatchProperties();
+        batchProperties.setVerificationConcurrency(concurrency);
+        BatchProperties.FairShare fairShare = new BatchProperties.FairShare();
+        fairShare.setMaxInFlightDomains(maxInFlightPerBatch);
+        batchProperties.setFairShare(fairShare);
+        return new VerificationScheduler(batchProperties, executor, new SimpleMeterRegistry());
+    }
+
+    private void submit(VerificationScheduler scheduler, UUID batchId, int weight, int rows, String name) {
+        scheduler.submit(batchId, weight, rows, () -> verified.add(name));
+    }
+
+    /**
+     * Runs the submitted tasks one at a time, in the order they were handed over, when the test asks for it.
+     */
+    private static class ManualExecutor extends AbstractExecutorService {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            tasks.add(command);
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runNext() {
+            tasks.remove().run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                runNext();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> remaining = new ArrayList<>(tasks);
+            tasks.clear();
+            return remaining;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+
+    }
+
+}